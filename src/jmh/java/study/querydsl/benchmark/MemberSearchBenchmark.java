@@ -0,0 +1,103 @@
+package study.querydsl.benchmark;
+
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 같은 회원 검색을 JPA(Querydsl JPA) 경로와 querydsl-sql 경로로 실행해서 비교한다.
+ * engine 값마다 member.search.engine을 바꿔서 애플리케이션을 따로 띄운다. ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MemberSearchBenchmark {
+
+    private static final int MEMBERS = 10_000;
+
+    @Param({"jpa", "sql"})
+    String engine;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    MemberSearchCondition teamCondition;
+    MemberSearchCondition ageCondition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SpringApplication.run(QuerydslApplication.class,
+                "--spring.profiles.active=benchmark",  // InitMember(local) 데이터 없이 시작
+                "--member.search.engine=" + engine,
+                "--member.pool.adaptive.enabled=false",
+                "--member.tracing.logging-exporter=false",
+                "--management.tracing.sampling.probability=0.0",
+                "--logging.level.org.hibernate.SQL=info",
+                "--decorator.datasource.p6spy.enable-logging=false");
+        memberRepository = context.getBean(MemberRepository.class);
+
+        EntityManager em = context.getBean(EntityManager.class);
+        context.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < MEMBERS; i++) {
+                em.persist(new Member("member" + i, i % 100, i % 2 == 0 ? teamA : teamB));
+                if (i % 1000 == 0) {
+                    em.flush();
+                    em.clear();
+                    teamA = em.getReference(Team.class, teamA.getId());
+                    teamB = em.getReference(Team.class, teamB.getId());
+                }
+            }
+        });
+
+        teamCondition = new MemberSearchCondition();
+        teamCondition.setTeamName("teamA");
+        teamCondition.setAgeGoe(90);  // 약 500건
+        ageCondition = new MemberSearchCondition();
+        ageCondition.setAgeLoe(10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        EntityManager em = context.getBean(EntityManager.class);
+        context.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search() {
+        return memberRepository.search(teamCondition);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPage() {
+        return memberRepository.searchPage(ageCondition, PageRequest.of(2, 20));
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.controller;
+
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import study.querydsl.repository.support.ConcurrencyLimitExceededException;
+import study.querydsl.repository.support.PageTooDeepException;
+import study.querydsl.repository.support.UnsupportedFieldException;
+import study.querydsl.repository.support.UnsupportedSortException;
+
+/**
+ * 조회 API(MemberController, TeamController) 공통 예외 응답.
+ * 요청 마감 시각(QueryDeadline)은 인터셉터가 모든 조회 API에 걸기 때문에 타임아웃 응답도 컨트롤러마다 같아야 한다.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    // DB가 밀려서 검색 한도를 넘으면 톰캣 스레드를 붙잡고 기다리지 않고 바로 503으로 돌려보낸다.
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<Void> overloaded(ConcurrencyLimitExceededException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    // 인덱스가 없는 속성으로 정렬을 요청한 경우. 허용한 키는 MemberSort 참고
+    @ExceptionHandler(UnsupportedSortException.class)
+    public ResponseEntity<String> unsupportedSort(UnsupportedSortException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler(UnsupportedFieldException.class)
+    public ResponseEntity<String> unsupportedField(UnsupportedFieldException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    // 보관 회원을 포함한 검색처럼 앞쪽 행을 모두 읽어야 하는 조회에서 너무 뒤쪽 페이지를 요청한 경우
+    @ExceptionHandler(PageTooDeepException.class)
+    public ResponseEntity<String> pageTooDeep(PageTooDeepException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    // 문법이 틀린 Accept 헤더. 컨트롤러에서 직접 파싱하기 때문에 그냥 두면 500이 된다.
+    // 본문을 쓰려면 같은 Accept 헤더로 다시 협상해야 하므로 본문 없이 보낸다.
+    @ExceptionHandler(InvalidMediaTypeException.class)
+    public ResponseEntity<Void> invalidMediaType(InvalidMediaTypeException e) {
+        return ResponseEntity.badRequest().build();
+    }
+
+    // 요청 마감 시각(X-Request-Timeout 또는 기본 예산)이 지나 쿼리가 취소된 경우
+    @ExceptionHandler(QueryTimeoutException.class)
+    public ResponseEntity<Void> deadlineExceeded(QueryTimeoutException e) {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+    }
+}
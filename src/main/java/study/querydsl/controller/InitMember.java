@@ -4,12 +4,14 @@ import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.shard.ShardedMemberRepository;
 
 @Profile("local")  // 프로파일 local일 때만 동작
 @Component  // 컴포넌트 스캔으로 스프링 빈으로 등록
@@ -24,13 +26,21 @@ public class InitMember {
     }
 
     @Service
+    @RequiredArgsConstructor
     static class InitMemberService {
 
         @PersistenceContext
         private EntityManager em;
 
+        private final ObjectProvider<ShardedMemberRepository> shards;  // member.sharding.enabled=true 일 때만 있다.
+
         @Transactional
         public void init() {
+            ShardedMemberRepository sharded = shards.getIfAvailable();
+            if (sharded != null) {
+                initShards(sharded);
+                return;
+            }
             Team teamA = new Team("teamA");
             Team teamB = new Team("teamB");
             em.persist(teamA);
@@ -42,5 +52,16 @@ public class InitMember {
                 em.persist(new Member("member" + i, i, selectedTeam));
             }
         }
+
+        // 샤딩이 켜져 있으면 팀은 기본 DB(팀 디렉터리)와 팀의 샤드에, 회원은 팀의 샤드에 넣는다.
+        private void initShards(ShardedMemberRepository sharded) {
+            Team teamA = sharded.saveTeam("teamA");
+            Team teamB = sharded.saveTeam("teamB");
+
+            for (int i = 0; i < 100; i++) {
+                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
+                sharded.saveMember("member" + i, i, selectedTeam.getId());
+            }
+        }
     }
 }
@@ -3,29 +3,94 @@ package study.querydsl.controller;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import study.querydsl.dto.MemberBatchQuery;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.repository.MemberJpaRepository;
-import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberDataVersion;
+import study.querydsl.repository.MemberField;
+import study.querydsl.repository.MemberSearchCoalescer;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.hasText;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
-    private final MemberJpaRepository memberJpaRepository;
-    private final MemberRepository memberRepository;
+    private static final int MAX_BATCH_QUERIES = 50;
+
+    private final MemberSearchCoalescer memberSearchCoalescer;  // 같은 조건의 동시 요청은 쿼리 한 번으로 합친다.
+    private final MemberPageWriter memberPageWriter;
+    private final MemberDataVersion memberDataVersion;
 
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-        return memberJpaRepository.search(condition);
+    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition, WebRequest request) {
+        if (request.checkNotModified(etag(condition, null, null))) {
+            return null;  // 304 Not Modified. 쿼리를 실행하지 않는다.
+        }
+        return memberSearchCoalescer.search(condition);
+    }
+
+    // fields=username,age 처럼 필요한 컬럼만 요청하면 그 컬럼만 조회하고, 팀 컬럼과 팀 조건이 없으면 team 조인도 하지 않는다.
+    @GetMapping(value = "/v1/members", params = "fields")
+    public List<Map<String, Object>> searchMemberV1Fields(MemberSearchCondition condition, @RequestParam String fields,
+                                                          WebRequest request) {
+        Set<MemberField> memberFields = MemberField.parse(fields);  // 모르는 컬럼은 400
+        if (request.checkNotModified(etag(condition, memberFields))) {
+            return null;  // 304 Not Modified. 쿼리를 실행하지 않는다.
+        }
+        return memberSearchCoalescer.searchFields(condition, memberFields);
+    }
+
+    /**
+     * 여러 검색 조건을 HTTP 요청 한 번, 쿼리 한 번으로 처리한다. 응답은 요청한 조건 순서대로 조건별 결과 목록이다.
+     * 예) [{"condition": {"teamName": "teamA"}, "limit": 10}, {"condition": {"ageGoe": 30}}]
+     */
+    @PostMapping("/v1/members/batch")
+    public ResponseEntity<List<List<MemberTeamDto>>> searchMemberBatch(@RequestBody List<MemberBatchQuery> queries) {
+        if (queries.size() > MAX_BATCH_QUERIES) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(memberSearchCoalescer.searchBatch(queries));
     }
 
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPage(condition, pageable);
+    public ResponseEntity<?> searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                            WebRequest request) {
+        // 같은 URL에 produces만 다른 핸들러를 여러 개 두면 Accept: */* 요청이 모호해지기 때문에 한 핸들러에서 직접 고른다.
+        // 잘못된 Accept 헤더는 쿼리 전에 400으로 돌려보낸다. (ApiExceptionHandler)
+        MediaType mediaType = hasText(accept) ? memberPageWriter.select(MediaType.parseMediaTypes(accept)) : null;
+        if (request.checkNotModified(etag(condition, pageable, accept))) {
+            return null;  // 304 Not Modified. 쿼리를 실행하지 않는다.
+        }
+        Page<MemberTeamDto> page = memberSearchCoalescer.searchPage(condition, pageable);
+        if (mediaType == null) {
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(page);  // 기존 PageImpl JSON 응답
+        }
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(mediaType)
+                .body(memberPageWriter.write(mediaType, page));
+    }
+
+    // 데이터 버전이 같고 조건, 페이지, 응답 형식(컬럼)이 같으면 응답도 같다. 조회 없이 계산할 수 있는 약한 ETag
+    private String etag(Object... keys) {
+        int hash = Objects.hash(keys);
+        return "W/\"" + Long.toHexString(memberDataVersion.current()) + "-" + Integer.toHexString(hash) + "\"";
     }
 }
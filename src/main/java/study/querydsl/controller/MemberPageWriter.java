@@ -0,0 +1,78 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberTeamColumns;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.PageResponse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 회원 페이지 응답을 Accept 헤더에 맞는 형식의 바이트로 직렬화한다.
+ * ObjectWriter는 타입별 직렬화기를 미리 찾아두고 스레드 안전하므로 빈 생성 시점에 한 번만 만들어 재사용한다.
+ */
+@Component
+public class MemberPageWriter {
+
+    public static final MediaType COMPACT_JSON = MediaType.parseMediaType("application/vnd.member.compact+json");  // 페이지 정보만 남긴 봉투 + 행 단위 JSON
+    public static final MediaType COLUMNAR_JSON = MediaType.parseMediaType("application/vnd.member.columnar+json");  // 페이지 봉투 + 컬럼 단위 JSON
+    public static final MediaType CBOR = MediaType.APPLICATION_CBOR;  // 페이지 봉투 + 컬럼 단위 CBOR(바이너리)
+
+    private static final List<MediaType> SUPPORTED = List.of(COMPACT_JSON, COLUMNAR_JSON, CBOR);
+
+    private final ObjectWriter rowsJsonWriter;
+    private final ObjectWriter columnsJsonWriter;
+    private final ObjectWriter columnsCborWriter;
+
+    public MemberPageWriter(ObjectMapper objectMapper) {  // 스프링 부트가 설정한 ObjectMapper를 그대로 사용
+        ObjectMapper cborMapper = objectMapper.copyWith(new CBORFactory());
+        this.rowsJsonWriter = objectMapper.writerFor(new TypeReference<PageResponse<List<MemberTeamDto>>>() {});
+        this.columnsJsonWriter = objectMapper.writerFor(new TypeReference<PageResponse<MemberTeamColumns>>() {});
+        this.columnsCborWriter = cborMapper.writerFor(new TypeReference<PageResponse<MemberTeamColumns>>() {});
+    }
+
+    /**
+     * 클라이언트가 명시적으로 요청한 형식 중 지원하는 것을 quality 순으로 고른다.
+     * *&#47;* 나 application/json 처럼 지원 형식이 없으면 null을 반환하고, 이때는 기존 JSON 응답을 그대로 쓴다.
+     */
+    public MediaType select(List<MediaType> accepted) {
+        List<MediaType> sorted = new ArrayList<>(accepted);
+        sorted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());  // 같은 quality는 요청 순서 유지
+        for (MediaType mediaType : sorted) {
+            for (MediaType supported : SUPPORTED) {
+                if (supported.equalsTypeAndSubtype(mediaType)) {
+                    return supported;
+                }
+            }
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return null;  // 기본 JSON을 더 우선으로 요청했다.
+            }
+        }
+        return null;
+    }
+
+    public byte[] write(MediaType mediaType, Page<MemberTeamDto> page) {
+        if (COMPACT_JSON.equals(mediaType)) {
+            return write(rowsJsonWriter, PageResponse.of(page, page.getContent()));
+        }
+        PageResponse<MemberTeamColumns> columns = PageResponse.of(page, MemberTeamColumns.of(page.getContent()));
+        return CBOR.equals(mediaType) ? write(columnsCborWriter, columns) : write(columnsJsonWriter, columns);
+    }
+
+    private byte[] write(ObjectWriter writer, Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize member page", e);
+        }
+    }
+}
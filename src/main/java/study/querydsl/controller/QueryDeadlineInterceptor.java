@@ -0,0 +1,56 @@
+package study.querydsl.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.time.Duration;
+
+/**
+ * 요청마다 쿼리에 쓸 수 있는 시간(마감 시각)을 정한다.
+ * 클라이언트가 X-Request-Timeout 헤더(밀리초)로 자기가 기다릴 시간을 알려주면 그 값을, 없으면 기본 예산을 쓴다.
+ */
+@Component
+public class QueryDeadlineInterceptor implements HandlerInterceptor {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private final Duration defaultBudget;
+    private final Duration maxBudget;
+
+    public QueryDeadlineInterceptor(@Value("${member.query.default-timeout:2s}") Duration defaultBudget,
+                                    @Value("${member.query.max-timeout:10s}") Duration maxBudget) {
+        this.defaultBudget = defaultBudget;
+        this.maxBudget = maxBudget;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryDeadline.start(budget(request.getHeader(TIMEOUT_HEADER)));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        QueryDeadline.clear();  // 톰캣 스레드는 재사용되므로 반드시 지운다.
+    }
+
+    private Duration budget(String header) {
+        if (header == null) {
+            return defaultBudget;
+        }
+        try {
+            long millis = Long.parseLong(header.trim());
+            if (millis <= 0) {
+                return defaultBudget;
+            }
+            Duration requested = Duration.ofMillis(millis);
+            return requested.compareTo(maxBudget) > 0 ? maxBudget : requested;  // 너무 긴 값으로 DB를 오래 잡아두지 못하게 상한을 둔다.
+        } catch (NumberFormatException e) {
+            return defaultBudget;
+        }
+    }
+}
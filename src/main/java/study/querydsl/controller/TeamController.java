@@ -0,0 +1,23 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.TeamWithMembersDto;
+import study.querydsl.repository.TeamQueryRepository;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamQueryRepository teamQueryRepository;
+
+    // 팀 페이지 + 팀별 회원 목록. 쿼리는 팀 페이지 한 번, 회원 한 번
+    @GetMapping("/v1/teams")
+    public Page<TeamWithMembersDto> teamsWithMembers(@RequestParam(required = false) String teamName, Pageable pageable) {
+        return teamQueryRepository.findTeamsWithMembers(teamName, pageable);
+    }
+}
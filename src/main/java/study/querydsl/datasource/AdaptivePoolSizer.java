@@ -0,0 +1,158 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.support.TracedJPAQuery;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 커넥션 대기 시간, 사용 중인 커넥션 수, 쿼리 지연 시간을 주기적으로 보고 Hikari maximumPoolSize를 조절한다.
+ *
+ * - 커넥션을 기다리는 스레드가 있거나 대기 시간이 길고, 쿼리 지연은 평소 수준이면 → 풀이 모자란 것이므로 늘린다.
+ * - 풀을 늘렸는데 쿼리 지연이 평소보다 크게 늘었으면 → DB가 포화된 것이므로 줄인다. (커넥션을 늘려도 DB 안에서 문맥 전환만 늘어난다)
+ *   줄여도 지연이 SATURATED_SAMPLES_BEFORE_RESET 구간 연속 높으면 포화가 아니라 평소 지연이 바뀐 것(데이터 증가, 배포 등)으로 보고
+ *   기준선을 지금 지연으로 다시 잡는다. 그러지 않으면 기준선이 옛 값에 묶여 풀이 최소 크기에서 다시 커지지 못한다.
+ * - 사용률이 계속 낮으면 → 한 단계씩 줄인다.
+ * 줄이면 남는 커넥션은 idleTimeout이 지나면서 정리되므로 minimum-idle은 최소 크기 이하로 설정해야 한다.
+ *
+ * 메트릭: member.pool.max_size (현재 최대 크기), member.pool.decisions{action=grow|shrink|hold}
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "member.pool.adaptive.enabled", havingValue = "true")
+public class AdaptivePoolSizer {
+
+    private static final double SATURATION_RATIO = 1.5;  // 쿼리 지연이 기준선의 1.5배를 넘으면 DB 포화로 본다.
+    private static final double BASELINE_WEIGHT = 0.1;  // 쿼리 지연 기준선(EMA)에 새 샘플을 반영하는 비율
+    private static final int IDLE_SAMPLES_BEFORE_SHRINK = 6;
+    private static final int SATURATED_SAMPLES_BEFORE_RESET = 3;
+
+    private final HikariDataSource hikari;
+    private final HikariConfigMXBean config;
+    private final MeterRegistry meterRegistry;
+    private final int minSize;
+    private final int maxSize;
+    private final long waitThresholdNanos;
+
+    private final Counter grow;
+    private final Counter shrink;
+    private final Counter hold;
+
+    private Snapshot previousAcquire = Snapshot.EMPTY;
+    private Snapshot previousQuery = Snapshot.EMPTY;
+    private double baselineQueryNanos;
+    private int idleSamples;
+    private int saturatedSamples;
+
+    public AdaptivePoolSizer(DataSource dataSource, MeterRegistry meterRegistry,
+                             @Value("${member.pool.adaptive.min-size:5}") int minSize,
+                             @Value("${member.pool.adaptive.max-size:30}") int maxSize,
+                             @Value("${member.pool.adaptive.wait-threshold-ms:5}") long waitThresholdMillis) throws SQLException {
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);  // p6spy가 감싸고 있으므로 꺼낸다.
+        this.hikari = hikari;
+        this.config = hikari.getHikariConfigMXBean();
+        this.meterRegistry = meterRegistry;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.waitThresholdNanos = TimeUnit.MILLISECONDS.toNanos(waitThresholdMillis);
+
+        Gauge.builder("member.pool.max_size", config, HikariConfigMXBean::getMaximumPoolSize).register(meterRegistry);
+        this.grow = Counter.builder("member.pool.decisions").tag("action", "grow").register(meterRegistry);
+        this.shrink = Counter.builder("member.pool.decisions").tag("action", "shrink").register(meterRegistry);
+        this.hold = Counter.builder("member.pool.decisions").tag("action", "hold").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${member.pool.adaptive.interval:5s}")
+    public synchronized void adjust() {
+        HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+        if (pool == null) {
+            return;  // 풀이 아직 시작되지 않았다.
+        }
+
+        // 이번 구간(직전 샘플 이후)의 평균만 본다. 누적 평균은 변화에 너무 늦게 반응한다.
+        Snapshot acquire = Snapshot.of(meterRegistry.find("hikaricp.connections.acquire").timers());
+        Snapshot query = Snapshot.of(meterRegistry.find(TracedJPAQuery.OBSERVATION_NAME).timers());  // phase 태그별 타이머를 합친다.
+        double acquireNanos = acquire.meanSince(previousAcquire);
+        double queryNanos = query.meanSince(previousQuery);
+        previousAcquire = acquire;
+        previousQuery = query;
+
+        int current = config.getMaximumPoolSize();
+        int active = pool.getActiveConnections();
+        int waiting = pool.getThreadsAwaitingConnection();
+        boolean saturated = baselineQueryNanos > 0 && queryNanos > baselineQueryNanos * SATURATION_RATIO;
+        saturatedSamples = saturated ? saturatedSamples + 1 : 0;
+        if (saturatedSamples >= SATURATED_SAMPLES_BEFORE_RESET) {
+            log.info("Query latency stayed above baseline for {} intervals, resetting baseline {}ms -> {}ms",
+                    saturatedSamples, toMillis(baselineQueryNanos), toMillis(queryNanos));
+            baselineQueryNanos = queryNanos;  // 바뀐 평소 지연
+            saturatedSamples = 0;
+            saturated = false;
+        } else if (queryNanos > 0 && !saturated) {
+            baselineQueryNanos = baselineQueryNanos == 0 ? queryNanos
+                    : baselineQueryNanos + (queryNanos - baselineQueryNanos) * BASELINE_WEIGHT;
+        }
+
+        int target = current;
+        if (saturated && current > minSize) {
+            target = Math.max(minSize, current - Math.max(1, current / 4));
+        } else if ((waiting > 0 || acquireNanos > waitThresholdNanos) && !saturated) {
+            target = Math.min(maxSize, current + Math.max(1, waiting));
+        } else if (active < current / 2) {
+            idleSamples++;
+            if (idleSamples >= IDLE_SAMPLES_BEFORE_SHRINK) {
+                target = Math.max(minSize, current - 1);
+            }
+        } else {
+            idleSamples = 0;
+        }
+
+        if (target == current) {
+            hold.increment();
+            return;
+        }
+        idleSamples = 0;
+        config.setMaximumPoolSize(target);
+        (target > current ? grow : shrink).increment();
+        log.info("Hikari maximumPoolSize {} -> {} (active={}, waiting={}, acquireMs={}, queryMs={}, baselineQueryMs={})",
+                current, target, active, waiting, toMillis(acquireNanos), toMillis(queryNanos), toMillis(baselineQueryNanos));
+    }
+
+    private static double toMillis(double nanos) {
+        return Math.round(nanos / 10_000) / 100.0;
+    }
+
+    private record Snapshot(long count, double totalNanos) {
+
+        static final Snapshot EMPTY = new Snapshot(0, 0);
+
+        static Snapshot of(Collection<Timer> timers) {
+            long count = 0;
+            double totalNanos = 0;
+            for (Timer timer : timers) {
+                count += timer.count();
+                totalNanos += timer.totalTime(TimeUnit.NANOSECONDS);
+            }
+            return new Snapshot(count, totalNanos);
+        }
+
+        double meanSince(Snapshot previous) {
+            long count = this.count - previous.count;
+            return count <= 0 ? 0 : (totalNanos - previous.totalNanos) / count;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/**
+ * 일괄 검색의 조건 하나. limit을 주지 않으면 MemberBatchQuery.DEFAULT_LIMIT 건까지 돌려준다.
+ */
+@Data
+public class MemberBatchQuery {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private MemberSearchCondition condition = new MemberSearchCondition();
+    private Integer limit;
+
+    public int limitOrDefault() {
+        return limit == null ? DEFAULT_LIMIT : Math.max(0, Math.min(limit, MAX_LIMIT));
+    }
+}
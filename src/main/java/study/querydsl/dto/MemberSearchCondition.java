@@ -10,4 +10,5 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+    private boolean includeArchived;  // true이면 보관된 회원(member_archive)도 검색한다.
 }
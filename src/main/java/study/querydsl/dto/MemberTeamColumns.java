@@ -0,0 +1,38 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * MemberTeamDto 목록을 컬럼 단위로 담는다.
+ * 필드명은 한 번만 쓰이고 값은 배열로 나가기 때문에 행이 많을수록 응답 크기가 줄어든다.
+ */
+@Data
+public class MemberTeamColumns {
+
+    private long[] memberId;
+    private String[] username;
+    private int[] age;
+    private Long[] teamId;  // 팀이 없는 회원은 null
+    private String[] teamName;
+
+    public static MemberTeamColumns of(List<MemberTeamDto> rows) {
+        int size = rows.size();
+        MemberTeamColumns columns = new MemberTeamColumns();
+        columns.memberId = new long[size];
+        columns.username = new String[size];
+        columns.age = new int[size];
+        columns.teamId = new Long[size];
+        columns.teamName = new String[size];
+        for (int i = 0; i < size; i++) {
+            MemberTeamDto row = rows.get(i);
+            columns.memberId[i] = row.getMemberId();
+            columns.username[i] = row.getUsername();
+            columns.age[i] = row.getAge();
+            columns.teamId[i] = row.getTeamId();
+            columns.teamName[i] = row.getTeamName();
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,20 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/**
+ * 일괄 upsert 결과. 같은 username이 여러 번 들어오면 마지막 행 하나로 센다.
+ */
+@Data
+public class MemberUpsertResult {
+
+    private long inserted;
+    private long updated;
+    private long unchanged;
+
+    public void add(long inserted, long updated, long unchanged) {
+        this.inserted += inserted;
+        this.updated += updated;
+        this.unchanged += unchanged;
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 외부 시스템(인사 시스템 등)에서 동기화할 회원 한 건. username으로 기존 회원을 찾는다.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberUpsertRow {
+
+    private String username;
+    private int age;
+    private String teamName;  // null이면 팀 없음
+}
@@ -0,0 +1,28 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+import org.springframework.data.domain.Page;
+
+/**
+ * PageImpl을 그대로 직렬화하면 pageable, sort 객체까지 매번 응답에 들어간다.
+ * 클라이언트가 실제로 쓰는 페이지 정보만 담는 가벼운 응답 봉투.
+ */
+@Data
+public class PageResponse<T> {
+
+    private T content;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+
+    public static <T> PageResponse<T> of(Page<?> page, T content) {
+        PageResponse<T> response = new PageResponse<>();
+        response.content = content;
+        response.page = page.getNumber();
+        response.size = page.getSize();
+        response.totalElements = page.getTotalElements();
+        response.totalPages = page.getTotalPages();
+        return response;
+    }
+}
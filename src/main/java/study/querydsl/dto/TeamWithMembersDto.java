@@ -0,0 +1,29 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 팀 한 건과 그 팀의 회원 목록. 팀 컬럼이 회원 수만큼 반복되지 않는다.
+ */
+@Data
+@NoArgsConstructor
+public class TeamWithMembersDto {
+    private Long teamId;
+    private String teamName;
+    private List<MemberSummaryDto> members = new ArrayList<>();
+
+    public TeamWithMembersDto(Long teamId, String teamName) {  // 회원 목록은 팀 페이지를 읽은 뒤 채운다.
+        this.teamId = teamId;
+        this.teamName = teamName;
+    }
+
+    public TeamWithMembersDto(Long teamId, String teamName, List<MemberSummaryDto> members) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.members = members;
+    }
+}
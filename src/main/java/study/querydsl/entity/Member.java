@@ -2,10 +2,19 @@ package study.querydsl.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.Hibernate;
+
+import java.time.LocalDateTime;
 
 @Getter
 @Setter
 @Entity
+@EntityListeners(MemberDataVersionListener.class)  // 변경되면 ETag용 데이터 버전을 올린다.
+@Table(indexes = {  // 검색 정렬 키(MemberSort). member_id까지 넣어야 같은 값끼리의 순서도 인덱스로 정해진다.
+        @Index(name = "idx_member_age", columnList = "age, member_id"),
+        @Index(name = "idx_member_username", columnList = "username, member_id"),
+        @Index(name = "idx_member_last_active", columnList = "last_active_at, member_id")  // 보관 대상(MemberArchiver) 찾기
+})
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})  // toString 어노테이션을 사용할 땐, 연관관계 필드를 넣게 되면 무한 루프가 될 수 조심해야 한다.
 public class Member {
@@ -21,6 +30,7 @@ public class Member {
     @JoinColumn(name = "team_id")
     private Team team;
 
+    private LocalDateTime lastActiveAt;  // 오래 활동이 없으면 member_archive로 옮겨진다. null이면 옮기지 않는다.
 
     public Member(String username) {
         this(username, 0);
@@ -33,13 +43,34 @@ public class Member {
     public Member(String username, int age, Team team) {
         this.username = username;
         this.age = age;
+        this.lastActiveAt = LocalDateTime.now();
         if (team != null) {
             changeTeam(team);
         }
     }
 
+    public void touch() {
+        this.lastActiveAt = LocalDateTime.now();  // 로그인 등 활동이 있을 때
+    }
+
     public void changeTeam(Team team) {
-        this.team = team;  // 팀을 바꾸면
-        team.getMembers().add(this);  // 팀에도 나를 추가해줘야 한다.
+        Team oldTeam = this.team;
+        this.team = team;  // 팀을 바꾸면 (연관관계 주인은 Member.team이라 DB에는 이 값만 반영된다)
+        if (oldTeam != null && oldTeam != team && isMembersLoaded(oldTeam)) {
+            oldTeam.getMembers().remove(this);  // 이전 팀 목록에서도 빼준다.
+        }
+        if (team != null && isMembersLoaded(team)) {
+            team.getMembers().add(this);  // 팀에도 나를 추가해줘야 한다.
+        }
+    }
+
+    /**
+     * 반대편 Team.members는 이미 메모리에 올라와 있을 때만 맞춰준다.
+     * 아직 로딩되지 않은 목록에 add/remove를 하면 회원 하나를 옮기려고 팀의 회원 전체를 읽게 된다.
+     * 로딩되지 않은 목록은 나중에 읽을 때 DB(member.team_id)에서 바뀐 값으로 읽힌다.
+     * 영속 상태가 아닌 새 Team의 ArrayList는 항상 로딩된 것으로 본다.
+     */
+    private static boolean isMembersLoaded(Team team) {
+        return Hibernate.isPropertyInitialized(team, "members") && Hibernate.isInitialized(team.getMembers());
     }
 }
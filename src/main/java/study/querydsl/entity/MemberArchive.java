@@ -0,0 +1,41 @@
+package study.querydsl.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * 오래 활동이 없어서 member 테이블에서 옮겨진 회원. (MemberArchiver)
+ * member 테이블과 인덱스를 활동 중인 회원 크기로 유지하기 위해 따로 둔다.
+ * 팀은 연관관계 대신 team_id 값만 들고 있다. 팀 이름이 필요하면 team과 on 조인한다.
+ */
+@Getter
+@Entity
+@Table(name = "member_archive", indexes = {  // member와 같은 검색 정렬 키
+        @Index(name = "idx_member_archive_age", columnList = "age, member_id"),
+        @Index(name = "idx_member_archive_username", columnList = "username, member_id")
+})
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString(of = {"id", "username", "age"})
+public class MemberArchive {
+
+    @Id
+    @Column(name = "member_id")
+    private Long id;  // 원래 member_id를 그대로 쓴다.
+    private String username;
+    private int age;
+
+    @Column(name = "team_id")
+    private Long teamId;
+
+    private LocalDateTime lastActiveAt;
+    private LocalDateTime archivedAt;
+}
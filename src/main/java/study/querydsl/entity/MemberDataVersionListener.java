@@ -0,0 +1,24 @@
+package study.querydsl.entity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import study.querydsl.repository.MemberDataVersion;
+
+/**
+ * Member, Team 엔티티가 insert/update/delete 될 때 데이터 버전을 올린다.
+ * 스프링 부트가 하이버네이트에 SpringBeanContainer를 설정해주기 때문에 리스너도 생성자 주입을 받을 수 있다.
+ */
+@RequiredArgsConstructor
+public class MemberDataVersionListener {
+
+    private final MemberDataVersion memberDataVersion;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        memberDataVersion.bump();
+    }
+}
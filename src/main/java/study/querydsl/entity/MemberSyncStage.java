@@ -0,0 +1,35 @@
+package study.querydsl.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 회원 일괄 upsert(MemberUpsertRepository)에서 들어온 행을 잠깐 담아두는 스테이징 테이블.
+ * 엔티티로는 읽고 쓰지 않고 네이티브 SQL로만 다룬다. 스키마 생성(ddl-auto)을 위해 매핑만 해둔다.
+ * 배치가 끝나면 그 배치의 행은 지운다.
+ */
+@Getter
+@Entity
+@Table(name = "member_sync_stage", indexes = @Index(name = "idx_member_sync_stage_batch", columnList = "batch_id, username"))
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class MemberSyncStage {
+
+    @Id
+    private Long id;  // 새 회원이 되면 그대로 member_id로 쓴다. 미리 Member 시퀀스에서 받아둔다.
+
+    @Column(name = "batch_id", nullable = false, length = 36)
+    private String batchId;
+
+    @Column(nullable = false)
+    private String username;
+    private int age;
+
+    @Column(name = "team_id")
+    private Long teamId;
+}
@@ -1,9 +1,12 @@
 package study.querydsl.entity;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Table;
 import lombok.*;
 
 import java.util.ArrayList;
@@ -12,6 +15,8 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
+@EntityListeners(MemberDataVersionListener.class)  // 변경되면 ETag용 데이터 버전을 올린다.
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))  // 팀 이름 검색, 정렬
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
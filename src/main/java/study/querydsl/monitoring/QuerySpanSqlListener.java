@@ -0,0 +1,30 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.support.TracedJPAQuery;
+
+import java.sql.SQLException;
+
+/**
+ * 하이버네이트가 JPQL을 번역해서 실제로 실행한 SQL을 진행 중인 쿼리 span(TracedJPAQuery)에 붙인다.
+ * p6spy는 쿼리를 실행한 스레드에서 호출되므로 현재 observation이 곧 그 쿼리의 observation이다.
+ */
+@Component
+@RequiredArgsConstructor
+public class QuerySpanSqlListener extends JdbcEventListener {
+
+    private final ObservationRegistry observationRegistry;
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        Observation current = observationRegistry.getCurrentObservation();
+        if (current != null && TracedJPAQuery.OBSERVATION_NAME.equals(current.getContext().getName())) {
+            current.highCardinalityKeyValue("db.statement", statementInformation.getSql());  // 값은 넣지 않는다.
+        }
+    }
+}
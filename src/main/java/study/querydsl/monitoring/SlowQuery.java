@@ -0,0 +1,19 @@
+package study.querydsl.monitoring;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * 느린 쿼리 한 건의 기록.
+ */
+@Data
+public class SlowQuery {
+
+    private final Instant executedAt;
+    private final long elapsedMillis;
+    private final String sql;  // 바인딩 파라미터가 들어가기 전의 SQL
+    private final String sqlWithValues;  // 파라미터 값을 채운 SQL. 문자열 값은 기본으로 가려진다. (member.slow-query.show-values)
+    private final String origin;  // 쿼리를 실행한 리포지토리 메서드 (예: MemberRepositoryImpl.searchPage)
+    private volatile String plan;  // EXPLAIN 결과. 별도 커넥션에서 비동기로 채워진다.
+}
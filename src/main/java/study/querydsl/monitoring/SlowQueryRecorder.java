@@ -0,0 +1,161 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * p6spy가 가로챈 모든 statement 중 기준 시간을 넘긴 것을 기록한다.
+ * p6spy-spring-boot-starter는 JdbcEventListener 빈을 자동으로 등록해주므로 빈으로 만들기만 하면 된다.
+ *
+ * SELECT는 EXPLAIN 실행 계획도 같이 남긴다. 요청 스레드를 붙잡지 않도록 EXPLAIN은 별도 스레드와 별도 커넥션에서 실행한다.
+ * 최근 capacity 건만 링 버퍼에 남기고, /actuator/slowqueries 로 조회한다.
+ *
+ * 파라미터에는 username 같은 개인정보가 들어가므로 기본으로 SQL과 실행 계획의 문자열 값을 '***'로 가린다.
+ * EXPLAIN은 원래 값으로 실행하고 결과만 가린다. 값을 그대로 보려면 member.slow-query.show-values=true
+ */
+@Slf4j
+@Component
+public class SlowQueryRecorder extends JdbcEventListener implements DisposableBean {
+
+    private static final String ORIGIN_PACKAGE = "study.querydsl.repository";
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");  // 'it''s' 처럼 따옴표를 두 번 쓴 것까지 한 값
+
+    private final long thresholdNanos;
+    private final int capacity;
+    private final Deque<SlowQuery> buffer;
+    private final ObjectProvider<DataSource> dataSource;  // 데이터소스가 이 리스너를 감싸서 만들어지므로 나중에 꺼낸다.
+    private final ExecutorService explainExecutor;
+    private final boolean showValues;
+
+    public SlowQueryRecorder(@Value("${member.slow-query.threshold:200ms}") Duration threshold,
+                             @Value("${member.slow-query.capacity:100}") int capacity,
+                             @Value("${member.slow-query.show-values:false}") boolean showValues,
+                             ObjectProvider<DataSource> dataSource) {
+        this.thresholdNanos = threshold.toNanos();
+        this.showValues = showValues;
+        this.capacity = capacity;
+        this.buffer = new ArrayDeque<>(capacity);
+        this.dataSource = dataSource;
+        // EXPLAIN이 밀리면 버린다. 진단용 기능이 커넥션 풀을 다 써버리면 안 된다.
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), r -> {
+                    Thread thread = new Thread(r, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (timeElapsedNanos < thresholdNanos || isExplainThread()) {
+            return;
+        }
+
+        String sqlWithValues = statementInformation.getSqlWithValues();
+        SlowQuery slowQuery = new SlowQuery(
+                Instant.now(),
+                TimeUnit.NANOSECONDS.toMillis(timeElapsedNanos),
+                statementInformation.getSql(),
+                mask(sqlWithValues),
+                findOrigin());
+        record(slowQuery);
+
+        if (isSelect(sqlWithValues)) {
+            try {
+                explainExecutor.execute(() -> slowQuery.setPlan(mask(explain(sqlWithValues))));  // H2 실행 계획에는 SQL이 그대로 들어있다.
+            } catch (RejectedExecutionException ignored) {
+                // 종료 중이면 계획 없이 기록만 남긴다.
+            }
+        }
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (buffer) {
+            return new ArrayList<>(buffer);  // 최근 것이 앞에 온다.
+        }
+    }
+
+    private void record(SlowQuery slowQuery) {
+        synchronized (buffer) {
+            if (buffer.size() == capacity) {
+                buffer.removeLast();
+            }
+            buffer.addFirst(slowQuery);
+        }
+    }
+
+    private String explain(String sql) {
+        try (Connection connection = dataSource.getObject().getConnection();
+             Statement statement = connection.createStatement()) {
+            connection.setReadOnly(true);
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+                int columns = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        if (i > 1) {
+                            plan.append(" | ");
+                        }
+                        plan.append(rs.getString(i));
+                    }
+                    plan.append('\n');
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            log.debug("Failed to explain slow query", e);
+            return "EXPLAIN failed: " + e.getMessage();
+        }
+    }
+
+    private String mask(String sql) {
+        return showValues || sql == null ? sql : STRING_LITERAL.matcher(sql).replaceAll("'***'");
+    }
+
+    // 스택에서 가장 가까운 리포지토리 클래스의 메서드를 찾는다. 스프링 프록시와 하이버네이트 프레임은 건너뛴다.
+    private static String findOrigin() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(ORIGIN_PACKAGE))
+                .filter(frame -> !frame.getClassName().contains("$$"))
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1) + "." + frame.getMethodName())
+                .findFirst()
+                .orElse("unknown"));
+    }
+
+    private static boolean isSelect(String sql) {
+        return sql != null && sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select");
+    }
+
+    private static boolean isExplainThread() {
+        return Thread.currentThread().getName().equals("slow-query-explain");  // EXPLAIN 자체도 p6spy를 거친다.
+    }
+
+    @Override
+    public void destroy() {
+        explainExecutor.shutdownNow();  // 데이터소스가 닫히기 전에 대기 중인 EXPLAIN을 버리고 실행 중인 것은 인터럽트한다.
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.monitoring;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 외부 수집기 없이도 span을 볼 수 있도록 로그로 내보내는 exporter를 등록한다. (local 프로파일에서만 켠다)
+ * 스프링 부트의 OpenTelemetry 자동 설정이 SpanExporter 빈을 모두 모아서 사용한다.
+ * 테스트에서는 InMemorySpanExporter 빈을 추가해서 검증한다.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "member.tracing.logging-exporter", havingValue = "true")
+    SpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.monitoring.jfr;
+
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+public class JfrHibernateConfig {
+
+    @Bean
+    HibernatePropertiesCustomizer persistenceContextEventCustomizer() {
+        return properties -> properties.put("hibernate.integrator_provider",
+                (IntegratorProvider) () -> List.of(new PersistenceContextEventIntegrator()));
+    }
+}
@@ -0,0 +1,20 @@
+package study.querydsl.monitoring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("study.querydsl.PaginationPhase")
+@Label("Pagination Phase")
+@Category({"Querydsl", "Repository"})
+@StackTrace(false)
+public class PaginationPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;  // content, count
+
+    @Label("Rows")
+    long rows;  // content는 조회된 행 수, count는 전체 개수
+}
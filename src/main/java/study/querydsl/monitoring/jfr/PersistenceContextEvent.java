@@ -0,0 +1,20 @@
+package study.querydsl.monitoring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("study.querydsl.PersistenceContext")
+@Label("Persistence Context")
+@Category({"Querydsl", "Hibernate"})
+@StackTrace(false)
+public class PersistenceContextEvent extends Event {
+
+    @Label("Operation")
+    String operation;  // flush, autoFlush, clear
+
+    @Label("Entities")
+    int entities;  // flush가 처리한 엔티티 수. clear는 0
+}
@@ -0,0 +1,62 @@
+package study.querydsl.monitoring.jfr;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.ClearEventListener;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.integrator.spi.Integrator;
+
+/**
+ * 영속성 컨텍스트 flush/clear를 PersistenceContextEvent로 남긴다.
+ * 기본 리스너 앞(prepend)에서 이벤트를 시작하고 뒤(append)에서 커밋해서 flush에 걸린 시간을 잰다.
+ * clear 이벤트는 정리가 끝난 뒤에 발생하므로 시간 없이 순간 이벤트로 남긴다.
+ */
+public class PersistenceContextEventIntegrator implements Integrator {
+
+    private static final ThreadLocal<PersistenceContextEvent> FLUSH = new ThreadLocal<>();
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+
+        registry.prependListeners(EventType.FLUSH, (FlushEventListener) event -> begin());
+        registry.appendListeners(EventType.FLUSH, (FlushEventListener) event -> commit("flush", event.getNumberOfEntitiesProcessed()));
+
+        registry.prependListeners(EventType.AUTO_FLUSH, (AutoFlushEventListener) event -> begin());
+        registry.appendListeners(EventType.AUTO_FLUSH, (AutoFlushEventListener) event -> commit("autoFlush", event.getNumberOfEntitiesProcessed()));
+
+        registry.appendListeners(EventType.CLEAR, (ClearEventListener) event -> {
+            PersistenceContextEvent clear = new PersistenceContextEvent();
+            if (clear.isEnabled()) {
+                clear.operation = "clear";
+                clear.commit();
+            }
+        });
+    }
+
+    private static void begin() {
+        PersistenceContextEvent event = new PersistenceContextEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            FLUSH.set(event);
+        }
+    }
+
+    private static void commit(String operation, int entities) {
+        PersistenceContextEvent event = FLUSH.get();
+        if (event == null) {
+            return;
+        }
+        FLUSH.remove();
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.entities = entities;
+            event.commit();
+        }
+    }
+}
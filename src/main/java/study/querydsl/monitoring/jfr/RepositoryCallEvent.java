@@ -0,0 +1,38 @@
+package study.querydsl.monitoring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("study.querydsl.RepositoryCall")
+@Label("Repository Call")
+@Category({"Querydsl", "Repository"})
+@Description("MemberRepositoryCustom / MemberJpaRepository 메서드 호출 한 번")
+@StackTrace(false)
+public class RepositoryCallEvent extends Event {
+
+    @Label("Repository")
+    String repository;
+
+    @Label("Method")
+    String method;
+
+    @Label("Condition Shape")
+    @Description("값이 들어있는 검색 조건 필드 목록 (값 자체는 남기지 않는다)")
+    String conditionShape;
+
+    @Label("Row Count")
+    int rowCount;
+
+    @Label("Content Query Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long contentQueryDuration;
+
+    @Label("Count Query Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long countQueryDuration;
+}
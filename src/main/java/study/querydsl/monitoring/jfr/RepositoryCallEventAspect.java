@@ -0,0 +1,77 @@
+package study.querydsl.monitoring.jfr;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 리포지토리 메서드 호출마다 RepositoryCallEvent를 남긴다.
+ * MemberRepository(스프링 데이터 프록시)는 커스텀 메서드를 MemberRepositoryImpl로 넘기므로 구현 클래스 기준으로 잡아야 두 번 기록되지 않는다.
+ */
+@Aspect
+@Component
+public class RepositoryCallEventAspect {
+
+    @Around("execution(public * study.querydsl.repository.MemberRepositoryImpl.*(..))" +
+            " || execution(public * study.querydsl.repository.MemberJpaRepository.*(..))")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        RepositoryCallEvent event = new RepositoryCallEvent();
+        if (!event.isEnabled()) {
+            return joinPoint.proceed();
+        }
+
+        RepositoryCallEvent outer = RepositoryEvents.enter(event);
+        event.begin();
+        try {
+            Object result = joinPoint.proceed();
+            event.rowCount = rowCount(result);
+            return result;
+        } finally {
+            event.end();
+            RepositoryEvents.exit(outer);
+            if (event.shouldCommit()) {
+                event.repository = joinPoint.getSignature().getDeclaringType().getSimpleName();
+                event.method = joinPoint.getSignature().getName();
+                event.conditionShape = conditionShape(joinPoint.getArgs());
+                event.commit();
+            }
+        }
+    }
+
+    private static int rowCount(Object result) {
+        if (result instanceof Page<?> page) {
+            return page.getNumberOfElements();
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return -1;
+    }
+
+    // 값은 개인정보일 수 있으므로 어떤 조건이 들어왔는지만 남긴다. 예: "teamName,ageGoe"
+    private static String conditionShape(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof MemberSearchCondition condition) {
+                StringJoiner shape = new StringJoiner(",");
+                if (hasText(condition.getUsername())) shape.add("username");
+                if (hasText(condition.getTeamName())) shape.add("teamName");
+                if (condition.getAgeGoe() != null) shape.add("ageGoe");
+                if (condition.getAgeLoe() != null) shape.add("ageLoe");
+                return shape.length() == 0 ? "none" : shape.toString();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+package study.querydsl.monitoring.jfr;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 페이지 조회의 content/count 단계를 JFR 이벤트로 남기고, 진행 중인 RepositoryCallEvent에 단계별 시간을 더한다.
+ * JFR 녹화가 꺼져 있으면 isEnabled()에서 바로 빠져나가므로 비용이 거의 없다.
+ * 지금 어느 단계인지는 currentPhase()로 알 수 있다. (쿼리 span 태그에 사용)
+ */
+public final class RepositoryEvents {
+
+    public static final String PHASE_CONTENT = "content";
+    public static final String PHASE_COUNT = "count";
+    public static final String PHASE_NONE = "query";  // 페이지 조회가 아닌 일반 쿼리
+
+    private static final ThreadLocal<RepositoryCallEvent> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<String> PHASE = new ThreadLocal<>();
+
+    private RepositoryEvents() {
+    }
+
+    public static String currentPhase() {
+        String phase = PHASE.get();
+        return phase == null ? PHASE_NONE : phase;
+    }
+
+    static RepositoryCallEvent enter(RepositoryCallEvent event) {
+        RepositoryCallEvent outer = CURRENT.get();
+        CURRENT.set(event);
+        return outer;
+    }
+
+    static void exit(RepositoryCallEvent outer) {
+        if (outer == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(outer);
+        }
+    }
+
+    public static <T> List<T> content(Supplier<List<T>> query) {
+        PHASE.set(PHASE_CONTENT);
+        try {
+            PaginationPhaseEvent event = new PaginationPhaseEvent();
+            if (!event.isEnabled()) {
+                return query.get();
+            }
+            long start = System.nanoTime();
+            event.begin();
+            List<T> content = query.get();
+            event.end();
+            event.phase = PHASE_CONTENT;
+            event.rows = content.size();
+            event.commit();
+
+            RepositoryCallEvent call = CURRENT.get();
+            if (call != null) {
+                call.contentQueryDuration += System.nanoTime() - start;
+            }
+            return content;
+        } finally {
+            PHASE.remove();
+        }
+    }
+
+    // PageableExecutionUtils는 필요할 때만 count 쿼리를 실행하므로 supplier를 감싸서 넘긴다.
+    public static LongSupplier count(LongSupplier query) {
+        return () -> {
+            PHASE.set(PHASE_COUNT);
+            try {
+                PaginationPhaseEvent event = new PaginationPhaseEvent();
+                if (!event.isEnabled()) {
+                    return query.getAsLong();
+                }
+                long start = System.nanoTime();
+                event.begin();
+                long total = query.getAsLong();
+                event.end();
+                event.phase = PHASE_COUNT;
+                event.rows = total;
+                event.commit();
+
+                RepositoryCallEvent call = CURRENT.get();
+                if (call != null) {
+                    call.countQueryDuration += System.nanoTime() - start;
+                }
+                return total;
+            } finally {
+                PHASE.remove();
+            }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+import study.querydsl.repository.support.MemberConditions;
+import study.querydsl.repository.support.ScalarSubqueries;
+
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMemberArchive.memberArchive;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 보관된 회원(member_archive) 조회. 검색 조건에 includeArchived가 있을 때 MemberRepositoryImpl이 활동 회원 결과와 합친다.
+ * 결과 모양과 정렬 키는 활동 회원 검색과 같다.
+ */
+@Repository
+public class MemberArchiveRepository {
+
+    private final JPAQueryFactory queryFactory;
+
+    public MemberArchiveRepository(EntityManager em, ObservationRegistry observationRegistry,
+                                   ScalarSubqueries scalarSubqueries) {
+        this.queryFactory = new InstrumentedJPAQueryFactory(em, observationRegistry, scalarSubqueries);
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return searchQuery(condition).fetch();
+    }
+
+    // 정렬된 앞쪽 limit 건. 활동 회원의 앞쪽 limit 건과 합쳐서 페이지를 만든다.
+    public List<MemberTeamDto> searchTop(MemberSearchCondition condition, OrderSpecifier<?>[] orders, long limit) {
+        return searchQuery(condition)
+                .orderBy(orders)
+                .limit(limit)
+                .fetch();
+    }
+
+    public long count(MemberSearchCondition condition) {
+        JPAQuery<Long> query = queryFactory
+                .select(memberArchive.count())
+                .from(memberArchive);
+        if (hasText(condition.getTeamName())) {
+            query.leftJoin(team).on(team.id.eq(memberArchive.teamId));  // 팀 이름으로 거를 때만 조인한다.
+        }
+        Long count = query
+                .where(MemberConditions.of(condition, memberArchive.username, memberArchive.age, team.name))
+                .fetchOne();
+        return count == null ? 0 : count;
+    }
+
+    private JPAQuery<MemberTeamDto> searchQuery(MemberSearchCondition condition) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        memberArchive.id,
+                        memberArchive.username,
+                        memberArchive.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(memberArchive)
+                .leftJoin(team).on(team.id.eq(memberArchive.teamId))  // 연관관계가 없으므로 세타 조인 대신 on 조인
+                .where(MemberConditions.of(condition, memberArchive.username, memberArchive.age, team.name));
+    }
+}
@@ -0,0 +1,139 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import study.querydsl.repository.shard.ShardedMemberRepository;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 오래 활동하지 않은 회원(lastActiveAt이 inactiveAfter보다 오래된 회원)을 member에서 member_archive로 옮긴다.
+ * member 테이블과 그 인덱스, count 쿼리가 활동 회원 수에 맞춰 유지되도록 하는 것이 목적이다.
+ *
+ * 대상 회원의 member_id 범위를 chunkSize 단위 구간으로 나눠서 구간마다 트랜잭션 하나로 처리한다.
+ * 한 번에 전체를 옮기면 트랜잭션과 잠금이 커지므로 구간 단위로 나눈다. 중간에 실패해도 끝난 구간은 커밋되어 있고 다음 실행에서 이어진다.
+ * 1. 조건에 맞는 회원을 member_archive로 insert ... select
+ * 2. member_archive에 들어간 회원 중 여전히 조건에 맞는 회원만 member에서 delete
+ * 3. 1과 2 사이에 활동해서(touch) 지워지지 않은 회원은 member_archive에서 다시 뺀다.
+ *
+ * 벌크 쿼리라서 엔티티 리스너를 거치지 않으므로 데이터 버전은 직접 올린다.
+ *
+ * 기본 DB의 member 테이블만 옮기므로 샤딩(member.sharding.enabled)과 함께 켜면 매일 실패하는 대신 시작할 때 실패한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "member.archive.enabled", havingValue = "true")
+public class MemberArchiver {
+
+    private static final String ARCHIVE = "insert into MemberArchive (id, username, age, teamId, lastActiveAt, archivedAt)"
+            + " select m.id, m.username, m.age, m.team.id, m.lastActiveAt, local datetime from Member m"
+            + " where m.id between :from and :to and m.lastActiveAt < :cutoff";
+
+    private static final String DELETE_ACTIVE = "delete from Member m"
+            + " where m.id between :from and :to and m.lastActiveAt < :cutoff"
+            + " and m.id in (select a.id from MemberArchive a where a.id between :from and :to)";
+
+    private static final String DELETE_TOUCHED = "delete from MemberArchive a"
+            + " where a.id between :from and :to"
+            + " and a.id in (select m.id from Member m where m.id between :from and :to)";
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final MemberDataVersion memberDataVersion;
+    private final Duration inactiveAfter;
+    private final long chunkSize;
+
+    public MemberArchiver(EntityManager em, ObservationRegistry observationRegistry,
+                          PlatformTransactionManager transactionManager, MemberDataVersion memberDataVersion,
+                          ObjectProvider<ShardedMemberRepository> shards,
+                          @Value("${member.archive.inactive-after:365d}") Duration inactiveAfter,
+                          @Value("${member.archive.chunk-size:10000}") long chunkSize) {
+        Assert.isTrue(chunkSize > 0, "Chunk size must be positive!");
+        Assert.state(shards.getIfAvailable() == null,
+                "member.archive.enabled is not supported when member sharding is enabled");
+        this.em = em;
+        this.queryFactory = new InstrumentedJPAQueryFactory(em, observationRegistry);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.memberDataVersion = memberDataVersion;
+        this.inactiveAfter = inactiveAfter;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${member.archive.cron:0 0 4 * * *}")
+    public void scheduled() {
+        long archived = archive();
+        log.info("Archived {} inactive members", archived);
+    }
+
+    /**
+     * 지금 기준으로 비활동 회원을 옮기고 옮긴 회원 수를 돌려준다.
+     */
+    public long archive() {
+        return archive(LocalDateTime.now().minus(inactiveAfter));
+    }
+
+    public long archive(LocalDateTime cutoff) {
+        NumberExpression<Long> minId = member.id.min();
+        NumberExpression<Long> maxId = member.id.max();
+        Tuple bounds = queryFactory
+                .select(minId, maxId)
+                .from(member)
+                .where(member.lastActiveAt.lt(cutoff))  // idx_member_last_active
+                .fetchOne();
+        Long min = bounds == null ? null : bounds.get(minId);
+        Long max = bounds == null ? null : bounds.get(maxId);
+        if (min == null || max == null) {
+            return 0;  // 옮길 회원이 없다.
+        }
+
+        long archived = 0;
+        for (long start = min; start <= max; start += chunkSize) {
+            long from = start;
+            long to = Math.min(max, start + chunkSize - 1);
+            Long moved = transactionTemplate.execute(status -> archiveRange(from, to, cutoff));
+            archived += moved == null ? 0 : moved;
+        }
+        return archived;
+    }
+
+    private long archiveRange(long from, long to, LocalDateTime cutoff) {
+        em.flush();  // 호출한 쪽 트랜잭션에 참여했으면 아직 반영되지 않은 변경부터 내보낸다.
+        em.createQuery(ARCHIVE)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
+        int moved = em.createQuery(DELETE_ACTIVE)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
+        em.createQuery(DELETE_TOUCHED)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .executeUpdate();
+
+        em.clear();  // 옮겨진 Member, 이미 읽어둔 Team.members는 DB와 다르다.
+        if (moved > 0) {
+            memberDataVersion.bump();  // 엔티티 리스너를 거치지 않는 변경
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.repository;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Member/Team 데이터가 바뀔 때마다 올라가는 버전 번호. 조회 결과의 ETag를 만들 때 사용한다.
+ * 엔티티 리스너가 변경을 알려주고, 벌크 update/delete처럼 영속성 컨텍스트를 거치지 않는 쿼리는 직접 bump()를 호출해야 한다.
+ */
+@Component
+public class MemberDataVersion {
+
+    // 재시작 후 이전 ETag와 우연히 같은 값이 나오지 않도록 현재 시각에서 시작한다.
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long current() {
+        return version.get();
+    }
+
+    public void bump() {
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(this)) {
+            // flush 시점에 한 번 올리고, 커밋(또는 롤백) 이후에 한 번 더 올린다.
+            // 그 사이에 들어온 조회는 커밋 전 데이터로 새 버전의 ETag를 받을 수 있기 때문이다.
+            // 엔티티가 많이 바뀌어도 트랜잭션당 한 번만 등록되도록 리소스로 표시해둔다.
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MemberDataVersion.this);
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+}
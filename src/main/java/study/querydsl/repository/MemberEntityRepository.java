@@ -0,0 +1,25 @@
+package study.querydsl.repository;
+
+import study.querydsl.entity.Member;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JpaRepository에서 물려받은 회원 엔티티 저장/조회 중 자주 쓰는 메서드를 직접 구현한다.
+ * 같은 시그니처의 커스텀 구현이 있으면 스프링 데이터가 SimpleJpaRepository 대신 이 구현을 호출한다.
+ * 샤딩(member.sharding.enabled)이 켜져 있으면 회원이 기본 DB가 아니라 샤드에 있으므로 ShardedMemberRepository로 보낸다.
+ * 여기 없는 나머지 JpaRepository 메서드(findAll(Pageable), getReferenceById, deleteAllInBatch 등)는 기본 DB만 본다.
+ */
+public interface MemberEntityRepository {
+    <S extends Member> S save(S entity);
+    <S extends Member> List<S> saveAll(Iterable<S> entities);
+    Optional<Member> findById(Long id);
+    boolean existsById(Long id);
+    List<Member> findAll();
+    List<Member> findAllById(Iterable<Long> ids);
+    List<Member> findByUsername(String username);
+    long count();
+    void deleteById(Long id);
+    void delete(Member entity);
+}
@@ -0,0 +1,132 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.shard.ShardedMemberRepository;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 샤딩이 꺼져 있으면 SimpleJpaRepository와 같이 기본 DB의 영속성 컨텍스트로 저장/조회한다.
+ */
+@Transactional(readOnly = true)
+public class MemberEntityRepositoryImpl implements MemberEntityRepository {
+
+    private final EntityManager em;
+    private final ShardedMemberRepository shards;  // member.sharding.enabled=true 일 때만 존재한다.
+
+    public MemberEntityRepositoryImpl(EntityManager em, ObjectProvider<ShardedMemberRepository> shards) {
+        this.em = em;
+        this.shards = shards.getIfAvailable();
+    }
+
+    @Override
+    @Transactional
+    public <S extends Member> S save(S entity) {
+        Assert.notNull(entity, "Entity must not be null!");
+        if (shards != null) {
+            return shards.save(entity);
+        }
+        if (entity.getId() == null) {
+            em.persist(entity);
+            return entity;
+        }
+        return em.merge(entity);
+    }
+
+    @Override
+    @Transactional
+    public <S extends Member> List<S> saveAll(Iterable<S> entities) {
+        List<S> result = new ArrayList<>();
+        for (S entity : entities) {
+            result.add(save(entity));
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<Member> findById(Long id) {
+        Assert.notNull(id, "The given id must not be null!");
+        if (shards != null) {
+            return shards.findById(id);
+        }
+        return Optional.ofNullable(em.find(Member.class, id));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public List<Member> findAll() {
+        if (shards != null) {
+            return shards.findAll();
+        }
+        return QueryDeadline.apply(em.createQuery("select m from Member m", Member.class))
+                .getResultList();
+    }
+
+    @Override
+    public List<Member> findAllById(Iterable<Long> ids) {
+        List<Long> list = new ArrayList<>();
+        ids.forEach(list::add);
+        if (shards != null) {
+            return shards.findAllByIds(list);
+        }
+        if (list.isEmpty()) {
+            return List.of();
+        }
+        return QueryDeadline.apply(em.createQuery("select m from Member m where m.id in :ids", Member.class))
+                .setParameter("ids", list)
+                .getResultList();
+    }
+
+    @Override
+    public List<Member> findByUsername(String username) {
+        if (shards != null) {
+            return shards.findByUsername(username);
+        }
+        return QueryDeadline.apply(em.createQuery("select m from Member m where m.username = :username", Member.class))
+                .setParameter("username", username)
+                .getResultList();
+    }
+
+    @Override
+    public long count() {
+        if (shards != null) {
+            return shards.count();
+        }
+        return QueryDeadline.apply(em.createQuery("select count(m) from Member m", Long.class))
+                .getSingleResult();
+    }
+
+    @Override
+    @Transactional
+    public void deleteById(Long id) {
+        Assert.notNull(id, "The given id must not be null!");
+        if (shards != null) {
+            shards.deleteById(id);
+            return;
+        }
+        Member found = em.find(Member.class, id);
+        if (found != null) {
+            em.remove(found);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void delete(Member entity) {
+        Assert.notNull(entity, "Entity must not be null!");
+        if (entity.getId() != null) {
+            deleteById(entity.getId());
+        }
+    }
+}
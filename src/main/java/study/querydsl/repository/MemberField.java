@@ -0,0 +1,54 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import study.querydsl.repository.support.UnsupportedFieldException;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * fields= 파라미터로 고를 수 있는 회원 검색 응답 컬럼. 이름은 MemberTeamDto 필드명과 같다.
+ * teamId는 member.team_id 외래 키 컬럼으로 읽을 수 있으므로 team 조인이 필요 없다. teamName만 조인이 필요하다.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum MemberField {
+
+    MEMBER_ID("memberId", member.id, false),
+    USERNAME("username", member.username, false),
+    AGE("age", member.age, false),
+    TEAM_ID("teamId", member.team.id, false),
+    TEAM_NAME("teamName", team.name, true);
+
+    private final String property;
+    private final Expression<?> expression;
+    private final boolean teamJoin;
+
+    /**
+     * "username,age" 같은 쉼표 목록을 읽는다. 비어 있으면 모든 컬럼, 모르는 이름이 있으면 UnsupportedFieldException
+     */
+    public static Set<MemberField> parse(String fields) {
+        if (!hasText(fields)) {
+            return EnumSet.allOf(MemberField.class);
+        }
+        Set<MemberField> result = EnumSet.noneOf(MemberField.class);
+        for (String name : fields.split(",")) {
+            String property = name.trim();
+            if (property.isEmpty()) {
+                continue;
+            }
+            result.add(Arrays.stream(values())
+                    .filter(field -> field.property.equals(property))
+                    .findFirst()
+                    .orElseThrow(() -> new UnsupportedFieldException(property)));
+        }
+        return result.isEmpty() ? EnumSet.allOf(MemberField.class) : result;
+    }
+}
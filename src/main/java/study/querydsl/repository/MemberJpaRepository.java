@@ -3,19 +3,30 @@ package study.querydsl.repository;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.shard.ShardedMemberRepository;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+import study.querydsl.repository.support.QueryDeadline;
+import study.querydsl.repository.support.ScalarSubqueries;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.support.Querydsl4RepositorySupport.readOnly;
 
 @Repository
 public class MemberJpaRepository {
@@ -29,39 +40,96 @@ public class MemberJpaRepository {
 //        this.queryFactory = queryFactory;
 //    }
 
+    private final ObjectProvider<MemberWriteBehind> writeBehind;  // member.write-behind.enabled=true 일 때만 있다.
+    private final ShardedMemberRepository shards;  // member.sharding.enabled=true 일 때만 있다. 회원 저장/조회를 샤드로 보낸다.
+
     // JPAQueryFactory를 직접 생성하는 방법
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, ObservationRegistry observationRegistry,
+                               ObjectProvider<MemberWriteBehind> writeBehind,
+                               ObjectProvider<ShardedMemberRepository> shards, ScalarSubqueries scalarSubqueries) {
         this.em = em;
-        this.queryFactory = new JPAQueryFactory(em);
+        this.queryFactory = new InstrumentedJPAQueryFactory(em, observationRegistry, scalarSubqueries);  // 쿼리 타임아웃 + 쿼리 span
+        this.writeBehind = writeBehind;
+        this.shards = shards.getIfAvailable();
     }
 
     public void save(Member member) {
+        if (shards != null) {
+            shards.save(member);  // 팀이 속한 샤드에 저장하고 id를 채운다.
+            return;
+        }
         em.persist(member);
     }
 
+    /**
+     * 가입처럼 한 건씩 몰려 들어오는 저장용. 반환한 future는 회원이 커밋된 뒤에 완료된다.
+     * write-behind가 켜져 있으면 MemberWriteBehind가 다른 저장과 모아서 별도 트랜잭션으로 커밋하고,
+     * 꺼져 있으면 지금 트랜잭션에서 persist 하고 그 트랜잭션이 커밋될 때 완료된다. (롤백되면 예외로 완료)
+     * 샤딩이 켜져 있으면 샤드 저장이 바로 커밋되므로 완료된 future를 돌려준다. (write-behind와 샤딩은 함께 켤 수 없다)
+     */
+    public CompletableFuture<Member> saveAsync(Member member) {
+        if (shards != null) {
+            return CompletableFuture.completedFuture(shards.save(member));
+        }
+        MemberWriteBehind writer = writeBehind.getIfAvailable();
+        if (writer != null) {
+            return writer.save(member);
+        }
+
+        em.persist(member);
+        CompletableFuture<Member> committed = new CompletableFuture<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {  // persist가 성공했으면 트랜잭션 안이다.
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    committed.complete(member);
+                } else {
+                    committed.completeExceptionally(new IllegalStateException("Transaction rolled back before member was committed"));
+                }
+            }
+        });
+        return committed;
+    }
+
     public Optional<Member> findById(Long id) {
+        if (shards != null) {
+            return shards.findById(id);
+        }
         Member member = em.find(Member.class, id);
         return Optional.ofNullable(member);
     }
 
     public List<Member> findAll() {
-        return em.createQuery("select m from Member m", Member.class)
+        if (shards != null) {
+            return shards.findAll();
+        }
+        return QueryDeadline.apply(em.createQuery("select m from Member m", Member.class))
                 .getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll_Querydsl() {
-        return queryFactory
-                .selectFrom(member)
+        if (shards != null) {
+            return shards.findAll();
+        }
+        return readOnly(queryFactory
+                .selectFrom(member))  // 스냅샷 없이 읽기 전용으로 조회
                 .fetch();
     }
 
     public List<Member> findByUsername(String username) {
-        return em.createQuery("select m from Member m where m.username = :username", Member.class)  // 파라미터 바인딩
+        if (shards != null) {
+            return shards.findByUsername(username);
+        }
+        return QueryDeadline.apply(em.createQuery("select m from Member m where m.username = :username", Member.class))  // 파라미터 바인딩
                 .setParameter("username", username)
                 .getResultList();
     }
 
     public List<Member> findByUsername_Querydsl(String username) {
+        if (shards != null) {
+            return shards.findByUsername(username);
+        }
         return queryFactory
                 .selectFrom(member)
                 .where(member.username.eq(username))  // 파라미터 바인딩
@@ -69,6 +137,9 @@ public class MemberJpaRepository {
     }
 
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
+        if (shards != null) {
+            return shards.search(condition);  // DTO 검색은 샤드에 흩어진 회원을 모아서 조회
+        }
         BooleanBuilder builder = new BooleanBuilder();
         if (hasText(condition.getUsername())) {  // StringUtils.hasText()는 문자열이 비어있지 않고, null도 아닌지 체크한다.
             builder.and(member.username.eq(condition.getUsername()));
@@ -97,6 +168,9 @@ public class MemberJpaRepository {
     }
 
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        if (shards != null) {
+            return shards.search(condition);
+        }
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
@@ -0,0 +1,237 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.shard.MemberShards;
+import study.querydsl.repository.support.MemberConditions;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 수백만 건을 내보내거나 집계할 때 member_id 구간을 나눠 여러 커넥션에서 동시에 읽는다.
+ *
+ * 1. 조건에 맞는 member_id의 min/max를 구해서 병렬도 * RANGES_PER_WORKER 개의 구간으로 나눈다.
+ *    구간을 잘게 나눠두면 id가 한쪽에 몰려 있어도 먼저 끝난 스레드가 다음 구간을 가져가서 부하가 고르게 퍼진다.
+ * 2. 구간마다 같은 조건에 id 구간 조건을 붙여서 batchSize 건씩 키셋(id > 마지막 id) 방식으로 읽는다.
+ * 3. 스레드마다 자기 EntityManager(= 자기 커넥션)를 쓰므로 호출한 쪽의 트랜잭션에는 참여하지 않는다. 커밋된 데이터만 보인다.
+ *
+ * 병렬도는 member.scan.parallelism 이고, 다른 요청이 쓸 커넥션 하나는 남기도록 현재 커넥션 풀 크기 - 1 을 넘지 않는다.
+ *
+ * 샤딩이 켜져 있으면 기본 DB 대신 모든 샤드를 동시에 스캔한다. 샤드마다 자기 커넥션 풀이 있으므로 병렬도도 샤드마다 따로 정한다.
+ */
+@Component
+public class MemberParallelScanner {
+
+    private static final int RANGES_PER_WORKER = 4;
+
+    private final List<Source> sources;  // 스캔할 DB. 샤딩이 켜져 있으면 샤드들, 아니면 기본 DB 하나
+    private final HikariDataSource hikari;
+    private final int parallelism;
+    private final int batchSize;
+
+    public MemberParallelScanner(EntityManagerFactory emf, DataSource dataSource, ObjectProvider<MemberShards> shards,
+                                 @Value("${member.scan.parallelism:4}") int parallelism,
+                                 @Value("${member.scan.batch-size:1000}") int batchSize) throws SQLException {
+        Assert.isTrue(parallelism > 0, "Parallelism must be positive!");
+        Assert.isTrue(batchSize > 0, "Batch size must be positive!");
+        this.hikari = dataSource.unwrap(HikariDataSource.class);  // p6spy가 감싸고 있으므로 꺼낸다.
+        MemberShards memberShards = shards.getIfAvailable();
+        this.sources = memberShards == null
+                ? List.of(new Source(emf, hikari))
+                : IntStream.range(0, memberShards.size())
+                        .mapToObj(shard -> new Source(memberShards.get(shard), memberShards.dataSource(shard)))
+                        .toList();
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 조건에 맞는 회원을 모두 consumer에 넘긴다. 순서는 보장하지 않는다.
+     * consumer는 여러 스레드에서 호출되지만 한 번에 하나씩만 호출되므로 스레드 안전하지 않아도 된다.
+     */
+    public void forEach(MemberSearchCondition condition, Consumer<? super MemberTeamDto> consumer) {
+        forEach(where(condition), consumer);
+    }
+
+    public void forEach(Predicate where, Consumer<? super MemberTeamDto> consumer) {
+        Object lock = new Object();
+        scan(where, () -> null, (ignored, batch) -> {
+            synchronized (lock) {
+                batch.forEach(consumer);
+            }
+        });
+    }
+
+    /**
+     * 구간마다 collector로 따로 누적하고 마지막에 combiner로 합친다. 예) Collectors.averagingInt(MemberTeamDto::getAge)
+     */
+    public <A, R> R collect(MemberSearchCondition condition, Collector<? super MemberTeamDto, A, R> collector) {
+        return collect(where(condition), collector);
+    }
+
+    public <A, R> R collect(Predicate where, Collector<? super MemberTeamDto, A, R> collector) {
+        List<A> partials = scan(where, collector.supplier(), (container, batch) ->
+                batch.forEach(dto -> collector.accumulator().accept(container, dto)));
+
+        A result = collector.supplier().get();
+        for (A partial : partials) {
+            result = collector.combiner().apply(result, partial);
+        }
+        return collector.finisher().apply(result);
+    }
+
+    // 현재 적용되는 병렬도. 커넥션 풀 크기는 AdaptivePoolSizer가 실행 중에 바꿀 수 있으므로 매번 계산한다.
+    public int effectiveParallelism() {
+        return effectiveParallelism(hikari);
+    }
+
+    private int effectiveParallelism(HikariDataSource pool) {
+        int poolSize = pool.getHikariConfigMXBean().getMaximumPoolSize();
+        return Math.max(1, Math.min(parallelism, poolSize - 1));
+    }
+
+    private <A> List<A> scan(Predicate where, Supplier<A> container, RangeConsumer<A> consumer) {
+        AtomicInteger threads = new AtomicInteger();
+        List<ExecutorService> executors = new ArrayList<>();
+        try {
+            List<CompletableFuture<A>> futures = new ArrayList<>();
+            for (Source source : sources) {
+                NumberExpression<Long> minId = member.id.min();
+                NumberExpression<Long> maxId = member.id.max();
+                Tuple bounds = read(source.emf(), queryFactory -> queryFactory
+                        .select(minId, maxId)
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(where)
+                        .fetchOne());
+                Long min = bounds == null ? null : bounds.get(minId);
+                Long max = bounds == null ? null : bounds.get(maxId);
+                if (min == null || max == null) {
+                    continue;  // 이 DB에는 조건에 맞는 회원이 없다.
+                }
+
+                // 샤드마다 자기 커넥션 풀을 쓰므로 스레드 풀도 따로 둔다.
+                int workers = effectiveParallelism(source.pool());
+                List<long[]> ranges = split(min, max, workers * RANGES_PER_WORKER);
+                ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, ranges.size()), r -> {
+                    Thread thread = new Thread(r, "member-scan-" + threads.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executors.add(executor);
+                for (long[] range : ranges) {
+                    futures.add(CompletableFuture.supplyAsync(() -> {
+                        A acc = container.get();
+                        scanRange(source.emf(), where, range[0], range[1], batch -> consumer.accept(acc, batch));
+                        return acc;
+                    }, executor));
+                }
+            }
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            executors.forEach(ExecutorService::shutdownNow);  // 하나가 실패하면 남은 구간은 중단한다.
+        }
+    }
+
+    // [from, to] 구간을 키셋 방식으로 batchSize 건씩 읽는다. offset을 쓰지 않으므로 뒤로 갈수록 느려지지 않는다.
+    private void scanRange(EntityManagerFactory emf, Predicate where, long from, long to, Consumer<List<MemberTeamDto>> consumer) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            long cursor = from - 1;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<MemberTeamDto> batch = queryFactory
+                        .select(new QMemberTeamDto(
+                                member.id,
+                                member.username,
+                                member.age,
+                                team.id.as("teamId"),
+                                team.name.as("teamName")))
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(where, member.id.gt(cursor), member.id.loe(to))
+                        .orderBy(member.id.asc())
+                        .limit(batchSize)
+                        .setHint(HibernateHints.HINT_READ_ONLY, true)
+                        .fetch();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                consumer.accept(batch);
+                if (batch.size() < batchSize) {
+                    return;
+                }
+                cursor = batch.get(batch.size() - 1).getMemberId();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    private static <T> T read(EntityManagerFactory emf, Function<JPAQueryFactory, T> query) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return query.apply(new JPAQueryFactory(em));
+        } finally {
+            em.close();
+        }
+    }
+
+    // [min, max]를 count개 이하의 겹치지 않는 구간으로 나눈다.
+    static List<long[]> split(long min, long max, int count) {
+        long span = max - min + 1;
+        long step = Math.max(1, (span + count - 1) / count);
+        List<long[]> ranges = new ArrayList<>();
+        for (long from = min; from <= max; from += step) {
+            ranges.add(new long[]{from, Math.min(max, from + step - 1)});
+        }
+        return ranges;
+    }
+
+    private static Predicate where(MemberSearchCondition condition) {
+        return ExpressionUtils.allOf(MemberConditions.of(condition));
+    }
+
+    @FunctionalInterface
+    private interface RangeConsumer<A> {
+        void accept(A container, List<MemberTeamDto> batch);
+    }
+
+    private record Source(EntityManagerFactory emf, HikariDataSource pool) {
+    }
+}
@@ -1,14 +1,25 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.Predicate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberBatchQuery;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
+    List<List<MemberTeamDto>> searchBatch(List<MemberBatchQuery> queries);
+    List<Map<String, Object>> searchFields(MemberSearchCondition condition, Set<MemberField> fields);
     Page<MemberTeamDto> searchPageDeprecated(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable);
+    List<Member> findAllByIds(Collection<Long> ids);
+    List<Member> findAllByUsernames(Collection<String> usernames);
+    long moveMembers(Long fromTeamId, Long toTeamId, Predicate predicate);
 }
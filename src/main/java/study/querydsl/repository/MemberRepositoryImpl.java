@@ -1,20 +1,59 @@
 package study.querydsl.repository;
 
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberBatchQuery;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitoring.jfr.RepositoryEvents;
+import study.querydsl.repository.shard.ShardedMemberRepository;
+import study.querydsl.repository.sql.MemberSqlRepository;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+import study.querydsl.repository.support.InListPartitioner;
+import study.querydsl.repository.support.PageTooDeepException;
+import study.querydsl.repository.support.QueryDeadline;
+import study.querydsl.repository.support.ScalarSubqueries;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
@@ -22,14 +61,187 @@ import static study.querydsl.entity.QTeam.team;
 
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    private static final int BATCH_MASK_BITS = 62;  // 2^61까지는 long 양수 리터럴로 쓸 수 있고 합해도 넘치지 않는다.
+    private static final int BATCH_FETCH_SIZE = 500;
+    private static final int BATCH_SCAN_ROUNDS = 4;  // 일괄 검색이 함께 스캔하는 최대 왕복 수. 넘으면 조건마다 따로 읽는다.
+    private static final long TOP_N_MAX = 1000;  // offset + size가 이 이하인 정렬 페이지는 인덱스 top-N으로 읽는다.
+
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;  // Querydsl을 사용할 것이므로 주입
+    private final ShardedMemberRepository shards;  // member.sharding.enabled=true 일 때만 존재한다.
+    private final MemberSqlRepository sql;  // member.search.engine=sql 일 때만 존재한다.
+    private final MemberDataVersion memberDataVersion;
+    private final MemberArchiveRepository archive;
 
-    public MemberRepositoryImpl(EntityManager em) {
-        this.queryFactory = new JPAQueryFactory(em);  // JPAQueryFactory를 빈 방식으로 구현하지 않았기 때문에 EntityManager를 주입받아 JPAQueryFactory 생성
+    public MemberRepositoryImpl(EntityManager em, ObservationRegistry observationRegistry,
+                                ObjectProvider<ShardedMemberRepository> shards, ObjectProvider<MemberSqlRepository> sql,
+                                MemberDataVersion memberDataVersion, MemberArchiveRepository archive,
+                                ScalarSubqueries scalarSubqueries) {
+        this.em = em;
+        this.sql = sql.getIfAvailable();
+        this.memberDataVersion = memberDataVersion;
+        this.archive = archive;
+        this.queryFactory = new InstrumentedJPAQueryFactory(em, observationRegistry, scalarSubqueries);  // JPAQueryFactory를 빈 방식으로 구현하지 않았기 때문에 EntityManager를 주입받아 JPAQueryFactory 생성
+        this.shards = shards.getIfAvailable();
     }
 
+    /**
+     * 기본은 활동 회원(member)만 검색한다. includeArchived이면 보관된 회원(member_archive)을 뒤에 이어 붙인다.
+     */
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        List<MemberTeamDto> active = searchActive(condition);
+        if (!condition.isIncludeArchived()) {
+            return active;
+        }
+        List<MemberTeamDto> result = new ArrayList<>(active);
+        result.addAll(archive.search(condition));
+        return result;
+    }
+
+    private List<MemberTeamDto> searchActive(MemberSearchCondition condition) {
+        if (shards != null) {
+            return shards.search(condition);  // 샤드에 흩어진 회원을 모아서 조회
+        }
+        if (sql != null) {
+            return sql.search(condition);  // JPA를 거치지 않는 SQL 경로
+        }
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .fetch();
+    }
+
+    /**
+     * 여러 검색 조건을 쿼리 한 번으로 실행한다. JPQL에는 UNION ALL이 없으므로 조건들을 OR로 묶어 한 번만 스캔하고,
+     * 행마다 어느 조건에 맞는지를 비트 마스크(CASE WHEN 조건 i THEN 2^i ELSE 0 END 의 합)로 같이 읽어서 조건별로 나눈다.
+     * member_id 순으로 BATCH_FETCH_SIZE 건씩 읽다가 모든 조건이 limit을 채우면 더 읽지 않는다. 결과는 queries와 같은 순서다.
+     * - 다음 왕복의 WHERE에는 아직 limit을 못 채운 조건만 남긴다.
+     * - 조건이 빈 검색은 스캔에 넣지 않고 따로 limit 쿼리 한 번으로 읽는다.
+     * - 스캔은 BATCH_SCAN_ROUNDS 번까지만 하고, 그래도 못 채운 조건은 조건마다 limit 쿼리로 나머지를 읽는다.
+     */
+    @Override
+    public List<List<MemberTeamDto>> searchBatch(List<MemberBatchQuery> queries) {
+        List<List<MemberTeamDto>> result = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            result.add(new ArrayList<>());
+        }
+        for (int from = 0; from < queries.size(); from += BATCH_MASK_BITS) {  // long 마스크 하나에 담을 수 있는 조건 수씩
+            int to = Math.min(from + BATCH_MASK_BITS, queries.size());
+            if (shards != null) {
+                for (int i = from; i < to; i++) {  // 샤드 조회는 조건마다 따로 모은다. 샤드마다 limit 건까지만 읽는다.
+                    result.get(i).addAll(shards.search(queries.get(i).getCondition(), queries.get(i).limitOrDefault()));
+                }
+            } else {
+                searchBatchChunk(queries.subList(from, to), result.subList(from, to));
+            }
+        }
+        for (int i = 0; i < queries.size(); i++) {  // search와 같이 보관 회원은 활동 회원 뒤에 limit까지 이어 붙인다.
+            MemberSearchCondition condition = queries.get(i).getCondition();
+            int remaining = queries.get(i).limitOrDefault() - result.get(i).size();
+            if (condition.isIncludeArchived() && remaining > 0) {
+                result.get(i).addAll(archive.searchTop(condition, MemberSort.orderByArchive(Sort.by("id")), remaining));
+            }
+        }
+        return result;
+    }
+
+    private void searchBatchChunk(List<MemberBatchQuery> queries, List<List<MemberTeamDto>> result) {
+        long pending = 0;  // 아직 limit을 못 채운 조건들
+        Predicate[] predicates = new Predicate[queries.size()];
+        NumberExpression<Long> mask = null;
+        for (int i = 0; i < queries.size(); i++) {
+            MemberSearchCondition condition = queries.get(i).getCondition();
+            int limit = queries.get(i).limitOrDefault();
+            if (limit <= 0) {
+                continue;
+            }
+            Predicate predicate = ExpressionUtils.allOf(
+                    usernameEq(condition.getUsername()),
+                    teamNameEq(condition.getTeamName()),
+                    ageGoe(condition.getAgeGoe()),
+                    ageLoe(condition.getAgeLoe()));
+            if (predicate == null) {
+                // 조건이 없으면 id 순 앞쪽 limit 건이 답이다. 같이 스캔하면 WHERE를 걸 수 없어서 테이블 전체를 읽게 되므로 따로 읽는다.
+                result.get(i).addAll(searchBatchOne(null, null, limit));
+                continue;
+            }
+            pending |= 1L << i;
+            predicates[i] = predicate;
+            // 상수를 파라미터로 넘기면 CASE의 결과 타입을 DB가 추론하지 못하므로 리터럴로 쓴다.
+            NumberExpression<Long> bit = new CaseBuilder()
+                    .when(predicate).then(Expressions.numberTemplate(Long.class, (1L << i) + "L"))
+                    .otherwise(Expressions.numberTemplate(Long.class, "0L"));
+            mask = mask == null ? bit : mask.add(bit);
+        }
+        if (pending == 0) {
+            return;
+        }
+
+        Long cursor = null;
+        for (int round = 0; round < BATCH_SCAN_ROUNDS && pending != 0; round++) {  // member_id 순으로 조금씩 읽다가 모든 조건이 채워지면 멈춘다.
+            List<Tuple> rows = queryFactory
+                    .select(member.id, member.username, member.age, team.id, team.name, mask)
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(anyOf(predicates, pending), cursor == null ? null : member.id.gt(cursor))  // 이미 채운 조건의 행은 더 읽지 않는다.
+                    .orderBy(member.id.asc())
+                    .limit(BATCH_FETCH_SIZE)
+                    .fetch();
+
+            for (Tuple row : rows) {
+                Number rowMask = row.get(mask);
+                long bits = (rowMask == null ? 0 : rowMask.longValue()) & pending;
+                if (bits == 0) {
+                    continue;
+                }
+                MemberTeamDto dto = new MemberTeamDto(row.get(member.id), row.get(member.username),
+                        row.get(member.age), row.get(team.id), row.get(team.name));
+                for (long rest = bits; rest != 0; rest &= rest - 1) {
+                    int i = Long.numberOfTrailingZeros(rest);
+                    List<MemberTeamDto> members = result.get(i);
+                    members.add(dto);  // 여러 조건에 맞는 행은 같은 DTO를 공유한다.
+                    if (members.size() >= queries.get(i).limitOrDefault()) {
+                        pending &= ~(1L << i);
+                    }
+                }
+            }
+            if (rows.size() < BATCH_FETCH_SIZE) {
+                return;  // 끝까지 읽었다. 못 채운 조건도 더 맞는 행이 없다.
+            }
+            cursor = rows.get(rows.size() - 1).get(member.id);
+        }
+
+        // 함께 읽는 스캔은 BATCH_SCAN_ROUNDS 번까지만 한다. 그래도 못 채운 조건은 cursor 다음부터 조건마다 limit 쿼리로 마저 읽는다.
+        for (long rest = pending; rest != 0; rest &= rest - 1) {
+            int i = Long.numberOfTrailingZeros(rest);
+            int remaining = queries.get(i).limitOrDefault() - result.get(i).size();
+            result.get(i).addAll(searchBatchOne(predicates[i], cursor, remaining));
+        }
+    }
+
+    private static Predicate anyOf(Predicate[] predicates, long bits) {
+        List<Predicate> selected = new ArrayList<>();
+        for (long rest = bits; rest != 0; rest &= rest - 1) {
+            selected.add(predicates[Long.numberOfTrailingZeros(rest)]);
+        }
+        return ExpressionUtils.anyOf(selected);
+    }
+
+    // 조건 하나를 member_id 순으로 after 다음부터 limit 건 읽는다.
+    private List<MemberTeamDto> searchBatchOne(Predicate predicate, Long after, int limit) {
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
@@ -39,6 +251,39 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         team.name.as("teamName")))
                 .from(member)
                 .leftJoin(member.team, team)
+                .where(predicate, after == null ? null : member.id.gt(after))
+                .orderBy(member.id.asc())
+                .limit(limit)
+                .fetch();
+    }
+
+    /**
+     * search와 같이 includeArchived이면 보관된 회원을 뒤에 이어 붙인다. 보관 회원은 전체 컬럼을 읽고 응답만 줄인다.
+     */
+    @Override
+    public List<Map<String, Object>> searchFields(MemberSearchCondition condition, Set<MemberField> fields) {
+        List<Map<String, Object>> active = searchActiveFields(condition, fields);
+        if (!condition.isIncludeArchived()) {
+            return active;
+        }
+        List<Map<String, Object>> result = new ArrayList<>(active);
+        archive.search(condition).forEach(dto -> result.add(fieldsOf(dto, fields)));
+        return result;
+    }
+
+    private List<Map<String, Object>> searchActiveFields(MemberSearchCondition condition, Set<MemberField> fields) {
+        if (shards != null) {
+            return shards.search(condition).stream().map(dto -> fieldsOf(dto, fields)).toList();  // 샤드 조회는 전체 컬럼을 읽고 응답만 줄인다.
+        }
+
+        List<MemberField> columns = List.copyOf(fields);
+        JPAQuery<Tuple> query = queryFactory
+                .select(columns.stream().map(MemberField::getExpression).toArray(Expression[]::new))
+                .from(member);
+        if (hasText(condition.getTeamName()) || columns.stream().anyMatch(MemberField::isTeamJoin)) {
+            query.leftJoin(member.team, team);  // 팀 이름을 읽거나 팀 이름으로 거를 때만 조인한다.
+        }
+        List<Tuple> rows = query
                 .where(
                         usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
@@ -46,6 +291,30 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         ageLoe(condition.getAgeLoe())
                 )
                 .fetch();
+
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (MemberField column : columns) {
+                values.put(column.getProperty(), row.get(column.getExpression()));
+            }
+            result.add(values);
+        }
+        return result;
+    }
+
+    private static Map<String, Object> fieldsOf(MemberTeamDto dto, Set<MemberField> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (MemberField field : fields) {
+            values.put(field.getProperty(), switch (field) {
+                case MEMBER_ID -> dto.getMemberId();
+                case USERNAME -> dto.getUsername();
+                case AGE -> dto.getAge();
+                case TEAM_ID -> dto.getTeamId();
+                case TEAM_NAME -> dto.getTeamName();
+            });
+        }
+        return values;
     }
 
     private BooleanExpression usernameEq(String username) {  // 반환 타입은 Predicate 보다는 BooleanExpression을 사용하는 것이 컴포지션도 되고 쓸모가 많다.
@@ -97,8 +366,24 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
     @Override
     public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        if (condition.isIncludeArchived()) {
+            return searchPageWithArchive(condition, pageable);
+        }
+        if (shards != null) {
+            return shards.searchPage(condition, pageable);
+        }
+        if (sql != null) {
+            return sql.searchPage(condition, pageable);
+        }
+
+        OrderSpecifier<?>[] orders = MemberSort.orderBy(pageable.getSort());  // 허용하지 않는 정렬 키는 여기서 거절한다.
+        if (MemberSort.isTopN(pageable.getSort()) && pageable.getOffset() + pageable.getPageSize() <= TOP_N_MAX) {
+            List<MemberTeamDto> content = RepositoryEvents.content(() -> searchTopN(condition, pageable, orders));
+            return PageableExecutionUtils.getPage(content, pageable, RepositoryEvents.count(() -> QueryDeadline.apply(countQuery(condition)).fetchOne()));
+        }
+
         // contents만 가져오는 쿼리
-        List<MemberTeamDto> content = queryFactory
+        List<MemberTeamDto> content = RepositoryEvents.content(() -> QueryDeadline.apply(queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
                         member.username,
@@ -113,15 +398,59 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
+                .orderBy(orders)
                 .offset(pageable.getOffset())  // offset()은 몇 번째 row부터 조회할지 결정한다.
-                .limit(pageable.getPageSize())  // limit()은 조회할 row 수를 결정한다.
-                .fetch();
+                .limit(pageable.getPageSize()), QueryDeadline.CONTENT_SHARE)  // 남은 시간의 절반만 쓰고 나머지는 count 쿼리 몫
+                .fetch());  // JFR content 단계 이벤트
 
         // total count를 가져오는 쿼리
         // 상황에 따라 다르지만 어떤 상황에는 count 할 때 조인이 필요없는 쿼리도 있다.(조인을 하든 안하든 카운트 수가 변함이 없거나 DB에 이미 카운트가 계산되어 저장되어 있거나...)
         // 조인이 필요 없게 되면 더 최적화가 되겠지? 그리고 카운트 쿼리의 결과가 없으면 contents 쿼리는 콜하지 않는다거나 해서 최적화 할 수도 있다.
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
+        JPAQuery<Long> countQuery = countQuery(condition);  // fetchOne() 부분 제거한 반환형을 받는다.
+
+        // 람다로 넘기므로 PageableExecutionUtils가 전체 건수를 알아야 할 때만 count 쿼리가 나간다.
+        return PageableExecutionUtils.getPage(content, pageable, RepositoryEvents.count(() -> QueryDeadline.apply(countQuery).fetchOne()));
+    }
+
+    /**
+     * 활동 회원과 보관 회원에서 각각 정렬된 앞쪽 offset + size 건을 읽어 합친 뒤 페이지만큼 자른다.
+     * 두 테이블을 합치는 쿼리(UNION)는 JPQL로 쓸 수 없어서 샤드 결과를 합칠 때와 같은 방식으로 메모리에서 합친다.
+     * 뒤쪽 페이지일수록 읽는 양이 offset에 비례해서 늘어나므로 offset + size가 TOP_N_MAX를 넘는 페이지는 거절한다. (400)
+     * 전체 건수는 두 count의 합이다.
+     */
+    private Page<MemberTeamDto> searchPageWithArchive(MemberSearchCondition condition, Pageable pageable) {
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("id");  // 합칠 때 순서가 정해져 있어야 한다.
+        Comparator<MemberTeamDto> comparator = MemberSort.comparator(sort);  // 허용하지 않는 정렬 키는 여기서 거절한다.
+        if (pageable.getOffset() + pageable.getPageSize() > TOP_N_MAX) {
+            throw new PageTooDeepException(TOP_N_MAX);
+        }
+        int limit = (int) (pageable.getOffset() + pageable.getPageSize());
+
+        Page<MemberTeamDto> active = searchPage(activeOnly(condition), PageRequest.of(0, limit, sort));
+        List<MemberTeamDto> archived = RepositoryEvents.content(() ->
+                archive.searchTop(condition, MemberSort.orderByArchive(sort), limit));
+        List<MemberTeamDto> content = Stream.concat(active.getContent().stream(), archived.stream())
+                .sorted(comparator)
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .toList();
+        long total = active.getTotalElements() + RepositoryEvents.count(() -> archive.count(condition)).getAsLong();
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private static MemberSearchCondition activeOnly(MemberSearchCondition condition) {
+        MemberSearchCondition active = new MemberSearchCondition();
+        active.setUsername(condition.getUsername());
+        active.setTeamName(condition.getTeamName());
+        active.setAgeGoe(condition.getAgeGoe());
+        active.setAgeLoe(condition.getAgeLoe());
+        return active;
+    }
+
+    // 행을 가져와서 세지 않고 count(*)를 실행한다. querydsl-sql 경로(MemberSqlRepository)와 같은 방식이라 벤치마크 비교도 공정하다.
+    private JPAQuery<Long> countQuery(MemberSearchCondition condition) {
+        return queryFactory
+                .select(member.count())
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
@@ -129,8 +458,149 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                );  // fetch().size() 부분 제거한 반환형을 받는다.
+                );
+    }
+
+    /**
+     * 정렬된 앞쪽 페이지 조회. 정렬 키 인덱스만 읽어서 id N개를 먼저 고르고, 그 id로 행을 가져온다.
+     * 행 전체를 정렬하지 않고 (정렬 키, member_id) 인덱스를 순서대로 N건 읽고 멈추므로 필터된 결과가 많아도 비용이 N에 비례한다.
+     * 정렬 키는 모두 member 컬럼이므로(MemberSort.isTopN) 팀 이름으로 거를 때만 조인한다.
+     */
+    private List<MemberTeamDto> searchTopN(MemberSearchCondition condition, Pageable pageable, OrderSpecifier<?>[] orders) {
+        JPAQuery<Long> idQuery = queryFactory
+                .select(member.id)
+                .from(member);
+        if (hasText(condition.getTeamName())) {
+            idQuery.leftJoin(member.team, team);
+        }
+        List<Long> ids = QueryDeadline.apply(idQuery
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .orderBy(orders)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize()), QueryDeadline.CONTENT_SHARE)
+                .fetch();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // id 쿼리가 쓰고 남은 시간도 다시 나눠서 나머지는 count 쿼리 몫으로 남긴다.
+        Map<Long, MemberTeamDto> rows = QueryDeadline.apply(queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.in(ids)), QueryDeadline.CONTENT_SHARE)
+                .fetch()
+                .stream()
+                .collect(Collectors.toMap(MemberTeamDto::getMemberId, Function.identity()));
+        return ids.stream().map(rows::get).filter(Objects::nonNull).toList();  // 인덱스에서 고른 순서대로
+    }
+
+    @Override
+    public List<Member> findAllByIds(Collection<Long> ids) {
+        if (shards != null) {
+            return shards.findAllByIds(ids);  // 샤드에서 읽은 준영속 엔티티. 기본 DB의 1차 캐시와는 상관없다.
+        }
+        Map<Long, Member> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id == null) {
+                continue;
+            }
+            Member cached = findInPersistenceContext(id);  // 1차 캐시에 이미 있는 엔티티는 쿼리하지 않는다.
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        for (List<Long> chunk : InListPartitioner.partition(missing)) {  // 청크마다 IN 쿼리 한 번
+            queryFactory
+                    .selectFrom(member)
+                    .where(member.id.in(chunk))
+                    .fetch()
+                    .forEach(m -> found.put(m.getId(), m));
+        }
+
+        // 입력한 id 순서대로 돌려준다. 없는 id는 결과에서 빠진다.
+        List<Member> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Member m = found.get(id);
+            if (m != null) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Member> findAllByUsernames(Collection<String> usernames) {
+        if (shards != null) {
+            return shards.findAllByUsernames(usernames);
+        }
+        // username은 유니크가 아니고 id도 모르기 때문에 1차 캐시는 확인할 수 없다. 매번 쿼리로 조회한다.
+        Map<String, List<Member>> found = new HashMap<>();
+        for (List<String> chunk : InListPartitioner.partition(usernames)) {
+            queryFactory
+                    .selectFrom(member)
+                    .where(member.username.in(chunk))
+                    .orderBy(member.id.asc())
+                    .fetch()
+                    .forEach(m -> found.computeIfAbsent(m.getUsername(), k -> new ArrayList<>()).add(m));
+        }
+
+        // 입력한 username 순서대로, 같은 username은 id 순서대로 돌려준다.
+        return new LinkedHashSet<>(usernames).stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * fromTeam 회원 중 predicate에 맞는 회원을 toTeam으로 옮긴다. update 한 번으로 끝나며 엔티티나 Team.members를 읽지 않는다.
+     * 벌크 update는 영속성 컨텍스트를 거치지 않으므로, 실행 전에 아직 쓰지 않은 변경을 flush 하고 실행 후 영속성 컨텍스트를 비운다.
+     * 비우면 같은 트랜잭션에서 호출한 쪽이 들고 있던 엔티티도 모두 준영속이 되므로, 이후 변경은 반영되지 않는다. 필요하면 다시 조회한다.
+     * predicate는 member 컬럼만 쓸 수 있다. (update 문에는 team 조인을 넣을 수 없다)
+     * 샤딩이 켜져 있으면 샤드에서 옮긴다. 두 팀이 다른 샤드에 있으면 회원 행을 샤드 사이에서 옮긴다. (ShardedMemberRepository.moveMembers)
+     */
+    @Override
+    @Transactional
+    public long moveMembers(Long fromTeamId, Long toTeamId, Predicate predicate) {
+        if (shards != null) {
+            return shards.moveMembers(fromTeamId, toTeamId, predicate);
+        }
+        em.flush();  // 벌크 update 전에 써야 update가 그 변경을 보고, clear로 변경을 잃지 않는다.
+        long count = queryFactory
+                .update(member)
+                .set(member.team, em.getReference(Team.class, toTeamId))  // 프록시라서 Team을 조회하지 않는다.
+                .where(member.team.id.eq(fromTeamId), predicate)
+                .execute();  // 반환 타입은 영향을 받은 row 수
+
+        em.clear();  // 이미 읽어둔 Member.team, Team.members는 DB와 다르므로 비운다.
+        if (count > 0) {
+            memberDataVersion.bump();  // 엔티티 리스너를 거치지 않는 변경
+        }
+        return count;
+    }
 
-        return PageableExecutionUtils.getPage(content, pageable, countQuery.fetch()::size);
+    private Member findInPersistenceContext(Long id) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;  // 트랜잭션 밖에서는 호출마다 영속성 컨텍스트가 새로 만들어지므로 볼 필요가 없다.
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(Member.class);
+        EntityKey key = session.generateEntityKey(id, persister);
+        return (Member) session.getPersistenceContextInternal().getEntity(key);
     }
 }
@@ -0,0 +1,132 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberBatchQuery;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.AdaptiveConcurrencyLimiter;
+import study.querydsl.repository.support.SingleFlight;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 트래픽이 몰릴 때 같은 조건의 검색이 동시에 여러 번 들어오면 쿼리를 한 번만 실행하고 결과를 나눠준다.
+ * 커넥션 풀을 한 요청당 하나씩 빌려가는 대신 같은 조건끼리는 커넥션 하나로 끝난다.
+ * 결과 DTO는 호출한 쪽끼리 공유되므로 읽기 전용으로만 써야 한다.
+ *
+ * 실제로 쿼리를 실행하는 leader 호출은 조회 종류별 AdaptiveConcurrencyLimiter를 통과해야 한다.
+ * DB가 느려지면 한도가 줄어들고, 한도를 넘는 호출은 커넥션을 기다리지 않고 ConcurrencyLimitExceededException으로 거절된다.
+ *
+ * 메트릭: member.search.coalesce{query, role=leader|follower}
+ * follower / (leader + follower) 가 합쳐진 비율이다.
+ * member.search.limit{query}, member.search.in_flight{query} 로 리미터 상태를 볼 수 있다.
+ */
+@Component
+public class MemberSearchCoalescer {
+
+    private final MemberRepository memberRepository;
+
+    private final SingleFlight<SearchKey, List<MemberTeamDto>> searchFlight = new SingleFlight<>();
+    private final SingleFlight<SearchKey, Page<MemberTeamDto>> searchPageFlight = new SingleFlight<>();
+    private final SingleFlight<FieldsKey, List<Map<String, Object>>> searchFieldsFlight = new SingleFlight<>();
+
+    // 조회 종류마다 비용이 다르므로 한도를 따로 둔다. searchPage는 쿼리를 두 번 실행한다.
+    private final AdaptiveConcurrencyLimiter searchLimiter = new AdaptiveConcurrencyLimiter("search", 10, 1, 50);
+    private final AdaptiveConcurrencyLimiter searchPageLimiter = new AdaptiveConcurrencyLimiter("searchPage", 5, 1, 25);
+
+    private final Counter searchLeader;
+    private final Counter searchFollower;
+    private final Counter searchPageLeader;
+    private final Counter searchPageFollower;
+    private final Counter searchFieldsLeader;
+    private final Counter searchFieldsFollower;
+
+    public MemberSearchCoalescer(MemberRepository memberRepository, MeterRegistry meterRegistry) {
+        this.memberRepository = memberRepository;
+        this.searchLeader = counter(meterRegistry, "search", "leader");
+        this.searchFollower = counter(meterRegistry, "search", "follower");
+        this.searchPageLeader = counter(meterRegistry, "searchPage", "leader");
+        this.searchPageFollower = counter(meterRegistry, "searchPage", "follower");
+        this.searchFieldsLeader = counter(meterRegistry, "searchFields", "leader");
+        this.searchFieldsFollower = counter(meterRegistry, "searchFields", "follower");
+        gauges(meterRegistry, searchLimiter);
+        gauges(meterRegistry, searchPageLimiter);
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        SingleFlight.Result<List<MemberTeamDto>> result =
+                searchFlight.execute(SearchKey.of(condition, null),
+                        () -> searchLimiter.execute(() -> memberRepository.search(condition)));  // 샤딩, SQL 경로 설정을 따른다.
+        (result.leader() ? searchLeader : searchFollower).increment();
+        return result.value();
+    }
+
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        SingleFlight.Result<Page<MemberTeamDto>> result =
+                searchPageFlight.execute(SearchKey.of(condition, pageable),
+                        () -> searchPageLimiter.execute(() -> memberRepository.searchPage(condition, pageable)));
+        (result.leader() ? searchPageLeader : searchPageFollower).increment();
+        return result.value();
+    }
+
+    // 컬럼 일부만 읽는 search. 전체 컬럼 search와 비용이 비슷하거나 적으므로 같은 리미터를 쓴다.
+    public List<Map<String, Object>> searchFields(MemberSearchCondition condition, Set<MemberField> fields) {
+        SingleFlight.Result<List<Map<String, Object>>> result =
+                searchFieldsFlight.execute(new FieldsKey(SearchKey.of(condition, null), fields),
+                        () -> searchLimiter.execute(() -> memberRepository.searchFields(condition, fields)));
+        (result.leader() ? searchFieldsLeader : searchFieldsFollower).increment();
+        return result.value();
+    }
+
+    /**
+     * 여러 조건을 쿼리 한 번으로 실행한다. 같은 요청이 동시에 올 일은 거의 없으므로 합치지 않고 리미터만 통과시킨다.
+     */
+    public List<List<MemberTeamDto>> searchBatch(List<MemberBatchQuery> queries) {
+        return searchLimiter.execute(() -> memberRepository.searchBatch(queries));
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String query, String role) {
+        return Counter.builder("member.search.coalesce")
+                .tag("query", query)
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+
+    private static void gauges(MeterRegistry meterRegistry, AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("member.search.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("query", limiter.getName())
+                .register(meterRegistry);
+        Gauge.builder("member.search.in_flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("query", limiter.getName())
+                .register(meterRegistry);
+    }
+
+    record FieldsKey(SearchKey search, Set<MemberField> fields) {
+    }
+
+    /**
+     * 결과가 같은 요청은 같은 키가 되도록 정규화한다. 빈 문자열 조건은 where 절에서 무시되므로 null과 같다.
+     */
+    record SearchKey(String username, String teamName, Integer ageGoe, Integer ageLoe, boolean includeArchived,
+                     Pageable pageable) {
+
+        static SearchKey of(MemberSearchCondition condition, Pageable pageable) {
+            return new SearchKey(
+                    hasText(condition.getUsername()) ? condition.getUsername() : null,
+                    hasText(condition.getTeamName()) ? condition.getTeamName() : null,
+                    condition.getAgeGoe(),
+                    condition.getAgeLoe(),
+                    condition.isIncludeArchived(),  // 보관 회원 포함 여부에 따라 결과가 다르다.
+                    pageable);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.UnsupportedSortException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberArchive.memberArchive;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색에서 허용하는 정렬 키. 모두 인덱스가 있는 컬럼이다.
+ * - age      → idx_member_age (age, member_id)
+ * - username → idx_member_username (username, member_id)
+ * - teamName → idx_team_name (name)
+ * - id, memberId → PK
+ *
+ * 마지막에 member.id를 붙여서 값이 같은 행의 순서를 고정한다. 첫 번째 키와 같은 방향으로 붙여야
+ * (age, member_id) 인덱스를 한 방향으로만 읽으면서 앞쪽 N건만 읽고 멈출 수 있다. (top-N)
+ * teamName은 조인한 team 테이블의 컬럼이라 member 인덱스 순서로 읽을 수 없다. 조인 결과 전체를 정렬해야 하므로 top-N 대상이 아니다. (isTopN)
+ * 그 외의 속성은 전체 정렬이 필요하므로 UnsupportedSortException을 던진다.
+ */
+public final class MemberSort {
+
+    // 보관 회원(member_archive)도 같은 키로 정렬한다. 팀은 같은 team 별칭으로 조인한다.
+    private static final Map<String, Key> KEYS = Map.of(
+            "age", new Key(member.age, memberArchive.age, MemberTeamDto::getAge),
+            "username", new Key(member.username, memberArchive.username, MemberTeamDto::getUsername),
+            "teamName", new Key(team.name, team.name, MemberTeamDto::getTeamName),
+            "id", new Key(member.id, memberArchive.id, MemberTeamDto::getMemberId),
+            "memberId", new Key(member.id, memberArchive.id, MemberTeamDto::getMemberId));
+
+    private MemberSort() {
+    }
+
+    public static OrderSpecifier<?>[] orderBy(Sort sort) {
+        return orderBy(sort, Key::path, member.id);
+    }
+
+    // member_archive 조회용. 순서는 orderBy(sort)와 같다.
+    public static OrderSpecifier<?>[] orderByArchive(Sort sort) {
+        return orderBy(sort, Key::archivePath, memberArchive.id);
+    }
+
+    private static OrderSpecifier<?>[] orderBy(Sort sort, Function<Key, ComparableExpressionBase<?>> pathOf,
+                                               ComparableExpressionBase<Long> id) {
+        validate(sort);
+        if (sort.isUnsorted()) {
+            return new OrderSpecifier<?>[0];
+        }
+
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        boolean hasId = false;
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> path = pathOf.apply(KEYS.get(order.getProperty()));
+            orders.add(order.isAscending() ? path.asc() : path.desc());
+            hasId |= path == id;
+        }
+        if (!hasId) {
+            orders.add(first(sort).isAscending() ? id.asc() : id.desc());
+        }
+        return orders.toArray(OrderSpecifier<?>[]::new);
+    }
+
+    /**
+     * orderBy(sort)와 같은 순서로 정렬하는 Comparator. 여러 샤드의 결과를 합칠 때 사용한다.
+     * H2, MySQL 모두 오름차순에서 null이 먼저 나오므로 같은 규칙을 따른다.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Comparator<MemberTeamDto> comparator(Sort sort) {
+        validate(sort);
+        Comparator<MemberTeamDto> comparator = null;
+        boolean hasId = false;
+        for (Sort.Order order : sort) {
+            Key key = KEYS.get(order.getProperty());
+            Comparator<Comparable> values = order.isAscending()
+                    ? Comparator.nullsFirst(Comparator.<Comparable>naturalOrder())
+                    : Comparator.nullsLast(Comparator.<Comparable>reverseOrder());
+            Comparator<MemberTeamDto> next = Comparator.comparing(dto -> (Comparable) key.value().apply(dto), values);
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+            hasId |= key.path() == member.id;
+        }
+        if (!hasId) {
+            Comparator<MemberTeamDto> byId = Comparator.comparing(MemberTeamDto::getMemberId);
+            Comparator<MemberTeamDto> tieBreaker = sort.isSorted() && first(sort).isDescending() ? byId.reversed() : byId;
+            comparator = comparator == null ? tieBreaker : comparator.thenComparing(tieBreaker);
+        }
+        return comparator;
+    }
+
+    // member 인덱스 순서로 앞쪽 N건만 읽고 멈출 수 있는 정렬인지. 조인한 팀 이름으로 정렬하면 멈출 수 없다.
+    public static boolean isTopN(Sort sort) {
+        validate(sort);
+        return sort.isSorted() && sort.stream().noneMatch(order -> KEYS.get(order.getProperty()).path() == team.name);
+    }
+
+    public static void validate(Sort sort) {
+        for (Sort.Order order : sort) {
+            if (!KEYS.containsKey(order.getProperty())) {
+                throw new UnsupportedSortException(order.getProperty());
+            }
+        }
+    }
+
+    private static Sort.Order first(Sort sort) {
+        return sort.iterator().next();
+    }
+
+    private record Key(ComparableExpressionBase<?> path, ComparableExpressionBase<?> archivePath,
+                       Function<MemberTeamDto, ? extends Comparable<?>> value) {
+    }
+}
@@ -1,13 +1,18 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.QueryDeadline;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
 
 import java.util.List;
@@ -23,36 +28,50 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         super(Member.class);
     }
 
+    @Transactional(readOnly = true)  // 호출한 쪽에 트랜잭션이 없으면 세션 자체를 읽기 전용(FlushMode.MANUAL)으로 연다.
     public List<Member> basicSelect() {
-        return select(member)
-                .from(member)
+        return readOnly(select(member)
+                .from(member))
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> basicSelectFrom() {
-        return selectFrom(member)
+        return readOnly(selectFrom(member))
                 .fetch();
     }
 
     // Querydsl support 사용 이전에 최적화 버전
+    @Transactional(readOnly = true)
     public Page<Member> searchPageByApplyPage(MemberSearchCondition condition, Pageable pageable) {
-        JPAQuery<Member> query = selectFrom(member)
+        // getQuerydsl().applyPagination()은 클라이언트가 보낸 정렬을 그대로 붙이므로 인덱스 없는 컬럼 정렬도 통과시킨다.
+        // 허용한 정렬 키(MemberSort)만 인덱스 순서대로 붙인다.
+        List<Member> content = QueryDeadline.apply(searchQuery(condition)
+                .orderBy(MemberSort.orderBy(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize()), QueryDeadline.CONTENT_SHARE)
+                .fetch();
+
+        JPAQuery<Member> query = searchQuery(condition);
+        return PageableExecutionUtils.getPage(content, pageable, query.fetch()::size);  // 조건에 따라 토탈 카운트 쿼리를 실행할지 말지 결정
+    }
+
+    private JPAQuery<Member> searchQuery(MemberSearchCondition condition) {
+        return readOnly(selectFrom(member))
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 );
-
-        List<Member> content = getQuerydsl().applyPagination(pageable, query)
-                .fetch();
-
-        return PageableExecutionUtils.getPage(content, pageable, query.fetch()::size);  // 조건에 따라 토탈 카운트 쿼리를 실행할지 말지 결정
     }
 
     // 직접 만든 Querydsl4RepositorySupport를 사용한 카운트 쿼리 분리 + 최적화 버전
     public Page<Member> applyPagination2(MemberSearchCondition condition, Pageable pageable) {
-        return applyPagination(pageable, contentQuery -> contentQuery
+        // 정렬은 여기서 인덱스 순서로 붙이고 support에는 정렬 없는 Pageable을 넘긴다.
+        OrderSpecifier<?>[] orders = MemberSort.orderBy(pageable.getSort());
+        Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        Page<Member> page = applyPagination(unsorted, contentQuery -> contentQuery
                 .selectFrom(member)
                 .leftJoin(member.team, team)
                 .where(
@@ -60,7 +79,8 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                ), countQuery -> countQuery
+                )
+                .orderBy(orders), countQuery -> countQuery
                 .select(member.id)
                 .from(member)
                 .leftJoin(member.team, team)
@@ -70,6 +90,7 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                         ageLoe(condition.getAgeLoe())
                 )
         );
+        return new PageImpl<>(page.getContent(), pageable, page.getTotalElements());  // 요청한 정렬 정보를 그대로 돌려준다.
     }
 
     private BooleanExpression usernameEq(String username) {  // 반환 타입은 Predicate 보다는 BooleanExpression을 사용하는 것이 컴포지션도 되고 쓸모가 많다.
@@ -0,0 +1,269 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import study.querydsl.dto.MemberUpsertResult;
+import study.querydsl.dto.MemberUpsertRow;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.InListPartitioner;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 외부 시스템에서 받은 회원 목록을 username 기준으로 한꺼번에 insert/update 한다.
+ * 한 건씩 findByUsername 후 persist 또는 dirty checking 하지 않고 배치 단위로 집합 연산 몇 번에 끝낸다.
+ *
+ * 배치마다 (각 배치는 자기 트랜잭션, 호출한 쪽에 트랜잭션이 있으면 거기에 참여)
+ * 1. 팀 이름을 team_id로 바꾼다. 이름 -> id 캐시를 먼저 보고, 없는 이름만 IN 절로 조회하고, 그래도 없으면 팀을 만든다.
+ * 2. 행마다 Member 시퀀스에서 id를 미리 받아서 member_sync_stage에 JDBC 배치로 넣는다.
+ *    (update가 될 행의 id는 버려진다. pooled 시퀀스라 대부분 메모리에서 나가는 번호다)
+ * 3. 스테이징 테이블과 member를 비교해서 inserted/updated/unchanged 수를 센다.
+ * 4. 적용한다. 나이나 팀이 같은 회원은 건드리지 않는다.
+ *    - H2: MERGE INTO ... USING ... WHEN MATCHED AND (바뀜) THEN UPDATE WHEN NOT MATCHED THEN INSERT 한 번
+ *    - MySQL: MERGE가 없고 member.username에 유니크 키가 없어서 ON DUPLICATE KEY UPDATE도 쓸 수 없으므로
+ *      조인 UPDATE 한 번 + INSERT ... SELECT ... WHERE NOT EXISTS 한 번
+ * 5. 배치의 스테이징 행을 지운다.
+ *
+ * 엔티티 리스너를 거치지 않으므로 데이터 버전은 직접 올린다. 동시에 같은 회원을 동기화하는 작업은 없다고 가정한다. (야간 동기화)
+ *
+ * member.username은 유일해야 한다. 스키마에는 유니크 제약이 없으므로 (테스트 데이터 등에서 같은 이름을 쓴다)
+ * 같은 username의 회원이 둘 이상이면 DB마다 다르게 동작한다. H2의 MERGE는 여러 행이 맞는다고 실패하고
+ * MySQL의 조인 UPDATE는 모두 바꾼다. 그래서 적용하기 전에 배치의 username 중 중복된 회원이 있는지 보고 있으면 배치를 롤백한다.
+ *
+ * 기본 DB의 member 테이블에만 적용하므로 샤딩(member.sharding.enabled)이 켜져 있으면 빈을 만들지 않는다.
+ * 이 빈을 주입받는 코드가 있으면 호출 시점이 아니라 시작할 때 실패한다.
+ */
+@Repository
+@ConditionalOnProperty(name = "member.sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class MemberUpsertRepository {
+
+    // 나이 또는 팀이 다르면 바뀐 것. team_id는 null일 수 있어서 DB마다 다른 null-safe 비교 대신 풀어 쓴다.
+    private static final String CHANGED = "(m.age <> s.age"
+            + " or m.team_id <> s.team_id"
+            + " or (m.team_id is null and s.team_id is not null)"
+            + " or (m.team_id is not null and s.team_id is null))";
+
+    private static final String INSERT_STAGE =
+            "insert into member_sync_stage (id, batch_id, username, age, team_id) values (?, ?, ?, ?, ?)";
+
+    private static final String COUNT = "select"
+            + " sum(case when not exists (select 1 from member m where m.username = s.username) then 1 else 0 end),"
+            + " sum(case when exists (select 1 from member m where m.username = s.username and " + CHANGED + ") then 1 else 0 end)"
+            + " from member_sync_stage s where s.batch_id = ?";
+
+    private static final String H2_MERGE = "merge into member m"
+            + " using (select id, username, age, team_id from member_sync_stage where batch_id = ?) s"
+            + " on (m.username = s.username)"
+            + " when matched and " + CHANGED + " then update set age = s.age, team_id = s.team_id"
+            + " when not matched then insert (member_id, username, age, team_id, last_active_at)"
+            + " values (s.id, s.username, s.age, s.team_id, localtimestamp)";  // null이면 MemberArchiver가 보관하지 않는다.
+
+    private static final String MYSQL_UPDATE = "update member m join member_sync_stage s on m.username = s.username"
+            + " set m.age = s.age, m.team_id = s.team_id"
+            + " where s.batch_id = ? and " + CHANGED;
+
+    private static final String MYSQL_INSERT = "insert into member (member_id, username, age, team_id, last_active_at)"
+            + " select s.id, s.username, s.age, s.team_id, localtimestamp from member_sync_stage s"
+            + " where s.batch_id = ? and not exists (select 1 from member m where m.username = s.username)";
+
+    private static final String DUPLICATES = "select s.username from member_sync_stage s"
+            + " join member m on m.username = s.username"
+            + " where s.batch_id = ?"
+            + " group by s.username having count(*) > 1";
+
+    private static final String DELETE_STAGE = "delete from member_sync_stage where batch_id = ?";
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final MemberDataVersion memberDataVersion;
+    private final int batchSize;
+
+    private final Map<String, Long> teamIds = new ConcurrentHashMap<>();  // 팀 이름 -> id. 커밋된 팀만 넣는다.
+
+    public MemberUpsertRepository(EntityManager em, ObservationRegistry observationRegistry,
+                                  PlatformTransactionManager transactionManager, MemberDataVersion memberDataVersion,
+                                  @Value("${member.sync.batch-size:1000}") int batchSize) {
+        Assert.isTrue(batchSize > 0, "Batch size must be positive!");
+        this.em = em;
+        this.queryFactory = new InstrumentedJPAQueryFactory(em, observationRegistry);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.memberDataVersion = memberDataVersion;
+        this.batchSize = batchSize;
+    }
+
+    public MemberUpsertResult upsert(Collection<MemberUpsertRow> rows) {
+        Map<String, MemberUpsertRow> distinct = new LinkedHashMap<>();  // 같은 username이 여러 번 오면 마지막 값으로 맞춘다.
+        for (MemberUpsertRow row : rows) {
+            Assert.hasText(row.getUsername(), "Username must not be empty!");
+            distinct.put(row.getUsername(), row);
+        }
+
+        List<String> statements = applyStatements();
+        MemberUpsertResult result = new MemberUpsertResult();
+        List<MemberUpsertRow> values = new ArrayList<>(distinct.values());
+        for (int from = 0; from < values.size(); from += batchSize) {
+            List<MemberUpsertRow> batch = values.subList(from, Math.min(from + batchSize, values.size()));
+            transactionTemplate.executeWithoutResult(status -> upsertBatch(batch, statements, result));
+        }
+        return result;
+    }
+
+    public void evictTeamCache() {
+        teamIds.clear();
+    }
+
+    private void upsertBatch(List<MemberUpsertRow> batch, List<String> statements, MemberUpsertResult result) {
+        Map<String, Long> teams = resolveTeams(batch.stream()
+                .map(MemberUpsertRow::getTeamName)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        String batchId = UUID.randomUUID().toString();
+        em.flush();  // 새로 만든 팀과 이미 바뀐 엔티티를 먼저 DB에 반영한다.
+        stage(batchId, batch, teams);
+
+        List<?> duplicates = em.createNativeQuery(DUPLICATES).setParameter(1, batchId).setMaxResults(10).getResultList();
+        if (!duplicates.isEmpty()) {
+            throw new IllegalStateException("Usernames must be unique to upsert, but found duplicated members: " + duplicates);
+        }
+        Object[] counts = (Object[]) em.createNativeQuery(COUNT).setParameter(1, batchId).getSingleResult();
+        long inserted = toLong(counts[0]);
+        long updated = toLong(counts[1]);
+        for (String sql : statements) {
+            em.createNativeQuery(sql).setParameter(1, batchId).executeUpdate();
+        }
+        em.createNativeQuery(DELETE_STAGE).setParameter(1, batchId).executeUpdate();
+
+        em.clear();  // 이미 읽어둔 Member는 DB와 다를 수 있다.
+        if (inserted + updated > 0) {
+            memberDataVersion.bump();  // 엔티티 리스너를 거치지 않는 변경
+        }
+        result.add(inserted, updated, batch.size() - inserted - updated);
+    }
+
+    private void stage(String batchId, List<MemberUpsertRow> batch, Map<String, Long> teams) {
+        SharedSessionContractImplementor session = em.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator generator = session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(Member.class).getIdentifierGenerator();  // em.persist()와 같은 시퀀스, 같은 pooled 범위
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            ids.add((Long) generator.generate(session, null));
+        }
+
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_STAGE)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    MemberUpsertRow row = batch.get(i);
+                    Long teamId = row.getTeamName() == null ? null : teams.get(row.getTeamName());
+                    statement.setLong(1, ids.get(i));
+                    statement.setString(2, batchId);
+                    statement.setString(3, row.getUsername());
+                    statement.setInt(4, row.getAge());
+                    if (teamId == null) {
+                        statement.setNull(5, Types.BIGINT);
+                    } else {
+                        statement.setLong(5, teamId);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    // 팀 이름 -> id. 캐시에 없는 이름만 조회하고, DB에도 없으면 만든다.
+    private Map<String, Long> resolveTeams(Set<String> names) {
+        Map<String, Long> resolved = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            Long id = teamIds.get(name);
+            if (id != null) {
+                resolved.put(name, id);
+            } else {
+                missing.add(name);
+            }
+        }
+
+        for (List<String> chunk : InListPartitioner.partition(missing)) {
+            List<Tuple> found = queryFactory
+                    .select(team.name, team.id)
+                    .from(team)
+                    .where(team.name.in(chunk))
+                    .orderBy(team.id.asc())  // 같은 이름의 팀이 여럿이면 먼저 만들어진 팀
+                    .fetch();
+            for (Tuple tuple : found) {
+                resolved.putIfAbsent(tuple.get(team.name), tuple.get(team.id));
+            }
+        }
+
+        Map<String, Long> fresh = new HashMap<>(resolved);  // 이번에 조회하거나 만든 팀
+        fresh.keySet().removeIf(teamIds::containsKey);
+        for (String name : missing) {
+            if (!resolved.containsKey(name)) {
+                Team newTeam = new Team(name);
+                em.persist(newTeam);
+                resolved.put(name, newTeam.getId());
+                fresh.put(name, newTeam.getId());
+            }
+        }
+        if (!fresh.isEmpty()) {
+            // 조회한 팀도 호출한 쪽 트랜잭션에서 만들고 아직 커밋하지 않은 팀일 수 있다.
+            // 롤백되면 없는 팀의 id가 캐시에 남으므로 만든 팀과 같이 커밋된 뒤에 넣는다.
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    teamIds.putAll(fresh);
+                }
+            });
+        }
+        return resolved;
+    }
+
+    private List<String> applyStatements() {
+        Dialect dialect = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        if (dialect instanceof H2Dialect) {
+            return List.of(H2_MERGE);
+        }
+        if (dialect instanceof MySQLDialect) {
+            return List.of(MYSQL_UPDATE, MYSQL_INSERT);  // UPDATE를 먼저 해서 방금 INSERT 한 행까지 조인하지 않는다.
+        }
+        throw new UnsupportedOperationException("Member upsert is not supported for " + dialect.getClass().getSimpleName());
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();  // 스테이징 행이 없으면 sum()은 null
+    }
+}
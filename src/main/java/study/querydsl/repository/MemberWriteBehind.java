@@ -0,0 +1,217 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.PropertyValueException;
+import org.hibernate.Session;
+import org.hibernate.TransientObjectException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.DataException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.shard.ShardedMemberRepository;
+import study.querydsl.repository.support.ConcurrencyLimitExceededException;
+
+import java.sql.SQLDataException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 저장을 모아서 한 트랜잭션(= 커밋 fsync 한 번)에 JDBC 배치로 insert 하는 write-behind 저장소.
+ * 가입이 몰릴 때 회원 하나당 트랜잭션 하나씩 커밋하지 않도록 한다.
+ *
+ * - 저장 요청은 크기가 정해진 큐에 들어가고, 백그라운드 스레드가 batchSize 건이 모이거나
+ *   첫 요청 후 maxDelay가 지나면 한 트랜잭션으로 persist + flush + commit 한다.
+ * - 반환하는 CompletableFuture는 그 행이 커밋된 뒤에 완료된다. (id가 채워진 Member)
+ *   완료되기 전에는 어디에도 저장된 것이 아니다. 프로세스가 죽으면 큐에 있던 저장은 사라지므로
+ *   응답 전에 저장이 보장되어야 하는 호출자는 future를 기다려야 한다.
+ * - 배치 중 한 건이라도 실패하면 배치 전체가 롤백된다. 제약 위반처럼 특정 행 때문에 실패했으면 그 배치를 한 건씩 다시 저장해서
+ *   실패한 건만 예외로 완료한다. 커넥션을 못 얻거나 커밋이 실패하는 등 DB 자체의 장애면 한 건씩 다시 해도 건마다 같은 타임아웃을
+ *   기다릴 뿐이므로 배치 전체를 바로 실패로 완료한다.
+ * - 큐가 가득 차면 enqueueTimeout 동안 기다리고, 그래도 자리가 없으면 ConcurrencyLimitExceededException(→ 503)으로 거절한다.
+ *   메모리에 쌓아두기만 하다가 한꺼번에 잃는 일이 없도록 대기열 길이를 제한하는 것이다.
+ * - 종료할 때는 새 요청을 받지 않고 큐에 남은 저장을 모두 커밋한 뒤에 끝난다. shutdownTimeout 안에 끝나지 않으면 남은 저장은 실패로 완료한다.
+ *
+ * 호출한 쪽의 트랜잭션과는 별개로 커밋되므로 호출한 쪽이 롤백해도 회원은 저장된다.
+ * 메트릭: member.write_behind.queue (대기 건수), member.write_behind.batch (배치 커밋 시간), member.write_behind.failed
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "member.write-behind.enabled", havingValue = "true")
+public class MemberWriteBehind implements DisposableBean {
+
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingSave> queue;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long enqueueTimeoutNanos;
+    private final Duration shutdownTimeout;
+
+    private final Timer batchTimer;
+    private final Counter failed;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public MemberWriteBehind(EntityManager em, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                             ObjectProvider<ShardedMemberRepository> shards,
+                             @Value("${member.write-behind.capacity:10000}") int capacity,
+                             @Value("${member.write-behind.batch-size:500}") int batchSize,
+                             @Value("${member.write-behind.max-delay:20ms}") Duration maxDelay,
+                             @Value("${member.write-behind.enqueue-timeout:100ms}") Duration enqueueTimeout,
+                             @Value("${member.write-behind.shutdown-timeout:30s}") Duration shutdownTimeout) {
+        Assert.isTrue(capacity > 0, "Capacity must be positive!");
+        Assert.isTrue(batchSize > 0, "Batch size must be positive!");
+        Assert.state(shards.getIfAvailable() == null,  // 기본 DB에 persist 하므로 샤드에 있어야 할 회원이 기본 DB에 쌓인다.
+                "member.write-behind.enabled is not supported when member sharding is enabled");
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.enqueueTimeoutNanos = enqueueTimeout.toNanos();
+        this.shutdownTimeout = shutdownTimeout;
+
+        Gauge.builder("member.write_behind.queue", queue, BlockingQueue::size).register(meterRegistry);
+        this.batchTimer = Timer.builder("member.write_behind.batch").register(meterRegistry);
+        this.failed = Counter.builder("member.write_behind.failed").register(meterRegistry);
+
+        this.writer = new Thread(this::run, "member-write-behind");
+        this.writer.setDaemon(true);  // 컨텍스트 종료(destroy)에서 큐를 비우고 끝낸다. 데몬이 아니면 JVM 종료 훅이 돌지 못한다.
+        this.writer.start();
+    }
+
+    public CompletableFuture<Member> save(Member member) {
+        Assert.isNull(member.getId(), "Only new members can be saved behind!");
+        if (!running) {
+            throw new IllegalStateException("Write-behind writer is shut down");
+        }
+        PendingSave pending = new PendingSave(member, new CompletableFuture<>());
+        try {
+            if (!queue.offer(pending, enqueueTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new ConcurrencyLimitExceededException("member.write-behind", queue.size() + queue.remainingCapacity());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for write-behind queue", e);
+        }
+        return pending.committed();
+    }
+
+    private void run() {
+        List<PendingSave> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingSave first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 첫 요청이 들어온 시점부터 maxDelay까지만 더 모은다. 요청이 드문드문 오면 그만큼 지연이 짧아진다.
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingSave next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;  // destroy()는 인터럽트하지 않으므로 여기 오는 것은 비정상 종료뿐이다.
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingSave> batch) {
+        try {
+            batchTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+                em.unwrap(Session.class).setJdbcBatchSize(batchSize);  // insert를 배치 하나로 보낸다.
+                batch.forEach(pending -> em.persist(pending.member()));
+                em.flush();
+                em.clear();
+            }));
+            batch.forEach(pending -> pending.committed().complete(pending.member()));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1 || !isRowFailure(e)) {
+                if (batch.size() > 1) {
+                    log.warn("Write-behind batch of {} members failed: {}", batch.size(), e.getMessage());
+                }
+                batch.forEach(pending -> fail(pending, e));
+                return;
+            }
+            // 어느 건이 문제인지 모르므로 한 건씩 다시 저장한다. 롤백된 배치의 id는 버려지므로 비워서 다시 받는다.
+            log.warn("Write-behind batch of {} members failed, retrying one by one: {}", batch.size(), e.getMessage());
+            for (PendingSave pending : batch) {
+                pending.member().setId(null);
+                write(List.of(pending));
+            }
+        }
+    }
+
+    // 특정 행의 값 때문에 실패한 경우만 true. 커넥션 획득 실패, 커밋 실패, 타임아웃은 행과 상관없이 다시 해도 실패한다.
+    private static boolean isRowFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException
+                    || cause instanceof ConstraintViolationException
+                    || cause instanceof DataException
+                    || cause instanceof PropertyValueException
+                    || cause instanceof TransientObjectException
+                    || cause instanceof EntityExistsException
+                    || cause instanceof SQLIntegrityConstraintViolationException
+                    || cause instanceof SQLDataException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fail(PendingSave pending, RuntimeException e) {
+        failed.increment();
+        pending.committed().completeExceptionally(e);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;  // 새 요청은 받지 않는다.
+        // 큐에 남은 저장을 커밋할 때까지 기다린다. JDBC 호출 중에 인터럽트하지 않도록 poll 타임아웃으로 빠져나온다.
+        // DB가 응답하지 않으면 종료가 끝없이 늦어지므로 shutdownTimeout까지만 기다린다.
+        writer.join(shutdownTimeout.toMillis());
+        if (writer.isAlive()) {
+            log.warn("Write-behind writer did not finish within {}, failing {} queued saves", shutdownTimeout, queue.size());
+        }
+
+        // running을 보고 나서 넣은 요청이나 시간 안에 쓰지 못한 요청이 남아 있을 수 있다. 조용히 사라지지 않도록 실패로 완료한다.
+        // 큐를 비우면 writer는 지금 쓰는 배치를 끝내고 멈춘다.
+        List<PendingSave> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        leftover.forEach(pending -> fail(pending, new IllegalStateException("Write-behind writer is shut down")));
+    }
+
+    private record PendingSave(Member member, CompletableFuture<Member> committed) {
+    }
+}
@@ -0,0 +1,23 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.repository.support.ScalarSubqueries;
+
+import java.time.Duration;
+
+/**
+ * 스칼라 서브쿼리 결과 캐시 설정. 캐시 키에 회원 데이터 버전을 넣어서 Member/Team이 바뀌면 이전 값은 쓰지 않는다.
+ * member.query.subquery-cache-ttl 이 0이면 캐시하지 않고 쿼리 실행마다 한 번씩 계산한다.
+ * 캐시는 이 빈이 가지므로 애플리케이션 컨텍스트(테스트 컨텍스트)마다 따로 생긴다.
+ */
+@Configuration
+public class ScalarSubqueryCacheConfig {
+
+    @Bean
+    public ScalarSubqueries scalarSubqueries(MemberDataVersion memberDataVersion,
+                                             @Value("${member.query.subquery-cache-ttl:0s}") Duration ttl) {
+        return new ScalarSubqueries(ttl, memberDataVersion::current);
+    }
+}
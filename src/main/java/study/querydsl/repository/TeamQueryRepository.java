@@ -0,0 +1,85 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSummaryDto;
+import study.querydsl.dto.QMemberSummaryDto;
+import study.querydsl.dto.TeamWithMembersDto;
+import study.querydsl.monitoring.jfr.RepositoryEvents;
+import study.querydsl.repository.shard.ShardedMemberRepository;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+import study.querydsl.repository.support.ScalarSubqueries;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.querydsl.core.group.GroupBy.groupBy;
+import static com.querydsl.core.group.GroupBy.list;
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 목록 + 팀별 회원 목록 조회.
+ * - team.members 지연 로딩은 팀마다 쿼리가 한 번씩 나간다. (N+1)
+ * - 컬렉션 fetch join은 회원 수만큼 팀 컬럼이 반복되고, 페이징을 메모리에서 하게 된다.
+ * 그래서 팀만 먼저 페이징해서 읽고, 그 페이지의 팀 id로 회원을 한 번에 읽어서 GroupBy로 팀별로 묶는다.
+ * 페이지에 팀이 몇 개든 쿼리는 두 번이다. (count 쿼리는 필요할 때만)
+ * 샤딩이 켜져 있으면 팀은 기본 DB(팀 디렉터리)에서 읽고, 회원은 팀이 속한 샤드에서 읽는다. (ShardedMemberRepository.findMembersByTeamIds)
+ */
+@Repository
+public class TeamQueryRepository {
+
+    private final JPAQueryFactory queryFactory;
+    private final ShardedMemberRepository shards;  // member.sharding.enabled=true 일 때만 존재한다.
+
+    public TeamQueryRepository(EntityManager em, ObservationRegistry observationRegistry, ScalarSubqueries scalarSubqueries,
+                               ObjectProvider<ShardedMemberRepository> shards) {
+        // transform()은 HQLTemplates에서 하이버네이트 6과 맞지 않으므로 JPQLTemplates를 쓴다.
+        this.queryFactory = new InstrumentedJPAQueryFactory(JPQLTemplates.DEFAULT, em, observationRegistry, scalarSubqueries);
+        this.shards = shards.getIfAvailable();
+    }
+
+    @Transactional(readOnly = true)
+    public Page<TeamWithMembersDto> findTeamsWithMembers(String teamName, Pageable pageable) {
+        List<TeamWithMembersDto> teams = RepositoryEvents.content(() -> queryFactory
+                .select(Projections.constructor(TeamWithMembersDto.class, team.id, team.name))
+                .from(team)
+                .where(teamNameEq(teamName))
+                .orderBy(team.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch());
+
+        if (!teams.isEmpty()) {
+            List<Long> teamIds = teams.stream().map(TeamWithMembersDto::getTeamId).toList();
+            Map<Long, List<MemberSummaryDto>> membersByTeam = shards != null ? shards.findMembersByTeamIds(teamIds) : queryFactory
+                    .from(member)
+                    .where(member.team.id.in(teamIds))  // team_id 외래 키로 바로 거르므로 team 조인이 필요 없다.
+                    .orderBy(member.team.id.asc(), member.id.asc())
+                    .transform(groupBy(member.team.id).as(list(new QMemberSummaryDto(member.id, member.username, member.age))));
+            teams.forEach(dto -> dto.setMembers(membersByTeam.getOrDefault(dto.getTeamId(), List.of())));
+        }
+
+        JPAQuery<Long> countQuery = queryFactory
+                .select(team.count())
+                .from(team)
+                .where(teamNameEq(teamName));
+        return PageableExecutionUtils.getPage(teams, pageable, RepositoryEvents.count(() -> countQuery.fetchOne()));
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+}
@@ -0,0 +1,76 @@
+package study.querydsl.repository.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.util.Assert;
+import study.querydsl.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 샤드별 DataSource와 EntityManagerFactory를 들고 있다.
+ * 샤드 DataSource를 빈으로 등록하면 스프링 부트의 기본 DataSource 자동 설정이 꺼지므로 빈으로 만들지 않고 여기서 직접 관리한다.
+ *
+ * Member는 team_id 기준으로 샤드가 정해지고, Team은 기본 DB(디렉터리)와 자기 샤드 양쪽에 같은 id로 저장된다.
+ * 팀이 없는 회원은 0번 샤드에 저장한다.
+ */
+public class MemberShards implements DisposableBean {
+
+    private final List<HikariDataSource> dataSources = new ArrayList<>();
+    private final List<EntityManagerFactory> entityManagerFactories = new ArrayList<>();
+
+    public MemberShards(ShardProperties properties, EntityManagerFactoryBuilder builder, ConfigurableListableBeanFactory beanFactory) {
+        Assert.notEmpty(properties.getShards(), "At least one shard must be configured!");
+        for (int i = 0; i < properties.getShards().size(); i++) {
+            ShardProperties.Shard shard = properties.getShards().get(i);
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("member-shard-" + i);
+            dataSource.setJdbcUrl(shard.getUrl());
+            dataSource.setUsername(shard.getUsername());
+            dataSource.setPassword(shard.getPassword());
+            dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+
+            LocalContainerEntityManagerFactoryBean factoryBean = builder
+                    .dataSource(dataSource)
+                    .packages(Member.class)
+                    .persistenceUnit("member-shard-" + i)
+                    .properties(Map.of(
+                            "hibernate.hbm2ddl.auto", properties.getDdlAuto(),
+                            "hibernate.resource.beans.container", new SpringBeanContainer(beanFactory)))  // 엔티티 리스너 생성자 주입
+                    .build();
+            factoryBean.afterPropertiesSet();
+
+            dataSources.add(dataSource);
+            entityManagerFactories.add(factoryBean.getObject());
+        }
+    }
+
+    public int size() {
+        return entityManagerFactories.size();
+    }
+
+    public int shardOf(Long teamId) {
+        return teamId == null ? 0 : (int) Math.floorMod(teamId, (long) size());
+    }
+
+    public EntityManagerFactory get(int shard) {
+        return entityManagerFactories.get(shard);
+    }
+
+    public HikariDataSource dataSource(int shard) {
+        return dataSources.get(shard);
+    }
+
+    @Override
+    public void destroy() {
+        entityManagerFactories.forEach(EntityManagerFactory::close);
+        dataSources.forEach(HikariDataSource::close);
+    }
+}
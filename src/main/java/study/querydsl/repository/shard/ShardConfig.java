@@ -0,0 +1,28 @@
+package study.querydsl.repository.shard;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.repository.MemberDataVersion;
+
+@Configuration
+@EnableConfigurationProperties(ShardProperties.class)
+@ConditionalOnProperty(name = "member.sharding.enabled", havingValue = "true")
+public class ShardConfig {
+
+    @Bean
+    MemberShards memberShards(ShardProperties properties, EntityManagerFactoryBuilder builder,
+                              ConfigurableListableBeanFactory beanFactory) {
+        return new MemberShards(properties, builder, beanFactory);
+    }
+
+    @Bean
+    ShardedMemberRepository shardedMemberRepository(MemberShards memberShards, EntityManager em,
+                                                    MemberDataVersion memberDataVersion) {
+        return new ShardedMemberRepository(memberShards, em, memberDataVersion);
+    }
+}
@@ -0,0 +1,27 @@
+package study.querydsl.repository.shard;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * member.sharding.* 설정. 샤드 순서가 곧 샤드 번호이므로 운영 중에 순서를 바꾸면 안 된다.
+ */
+@Data
+@ConfigurationProperties(prefix = "member.sharding")
+public class ShardProperties {
+
+    private boolean enabled;
+    private String ddlAuto = "none";  // 샤드 스키마 생성 방식 (로컬/테스트에서는 create)
+    private List<Shard> shards = new ArrayList<>();
+
+    @Data
+    public static class Shard {
+        private String url;
+        private String username = "sa";
+        private String password = "";
+        private int maximumPoolSize = 5;
+    }
+}
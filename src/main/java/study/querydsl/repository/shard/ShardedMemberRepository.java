@@ -0,0 +1,508 @@
+package study.querydsl.repository.shard;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSummaryDto;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberSummaryDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberDataVersion;
+import study.querydsl.repository.MemberSort;
+import study.querydsl.repository.support.InListPartitioner;
+import study.querydsl.repository.support.MemberConditions;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * team_id 기준으로 여러 DB에 나눠 저장한 회원을 조회한다. (scatter-gather)
+ *
+ * 1. teamName 조건이 있으면 기본 DB의 팀 디렉터리에서 팀 id를 찾아 해당 팀이 있는 샤드만 남긴다.
+ * 2. 남은 샤드에 같은 Querydsl 쿼리를 병렬로 실행한다.
+ * 3. 페이지 조회는 샤드마다 같은 정렬(MemberSort)로 offset + size 건까지만 가져와서 같은 순서로 합친 뒤 요청한 페이지만 잘라낸다.
+ *    count는 샤드별 count의 합이다.
+ *
+ * 샤딩이 켜져 있으면 MemberRepository, MemberJpaRepository의 회원 엔티티 저장/조회(save, findById, findAll, findByUsername 등)도 이 클래스로 온다.
+ *
+ * 회원 id는 샤드가 아니라 기본 DB의 회원 id 생성기(member_seq)에서 발급하므로 모든 샤드에서 유일하다.
+ * id만으로 회원을 가리킬 수 있고, 합칠 때 MemberSort의 마지막 정렬 기준(id)으로 순서가 정해진다.
+ */
+public class ShardedMemberRepository implements DisposableBean {
+
+    private static final int MOVE_CHUNK_SIZE = InListPartitioner.DEFAULT_CHUNK_SIZE;  // 샤드 사이에서 옮길 때 한 번에 읽고 넣는 회원 수
+    private static final String INSERT_MEMBER =
+            "insert into member (member_id, username, age, team_id, last_active_at) values (?, ?, ?, ?, ?)";
+
+    private final MemberShards shards;
+    private final EntityManager directory;  // 기본 DB. 모든 팀이 저장되는 팀 디렉터리
+    private final JPAQueryFactory directoryQueryFactory;
+    private final MemberDataVersion memberDataVersion;
+    private final ExecutorService executor;
+
+    public ShardedMemberRepository(MemberShards shards, EntityManager em, MemberDataVersion memberDataVersion) {
+        this.shards = shards;
+        this.directory = em;
+        this.memberDataVersion = memberDataVersion;
+        this.directoryQueryFactory = new JPAQueryFactory(em);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(shards.size() * 2, r -> {
+            Thread thread = new Thread(r, "member-shard-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 팀을 기본 DB(디렉터리)에 저장하고, 같은 id로 팀이 속한 샤드에도 저장한다. 샤드의 회원 조회가 team과 조인하기 때문이다.
+     *
+     * 두 DB에 걸친 분산 트랜잭션이 아니다. 샤드 insert는 자기 트랜잭션으로 먼저 커밋되고 디렉터리는 이 메서드의 트랜잭션이 끝날 때 커밋된다.
+     * - 샤드 insert가 실패하면 예외가 전파되어 디렉터리 insert도 롤백된다.
+     * - 샤드 커밋 후 디렉터리 트랜잭션이 롤백되거나 프로세스가 죽으면 샤드에만 팀 행이 남는다.
+     *   디렉터리에 없는 팀 id는 발급되지 않으므로 그 팀에 회원이 저장될 수 없고, 검색은 회원에서 출발하므로 결과에도 나오지 않는다.
+     * 반대로 디렉터리에만 있고 샤드에 없는 팀은 생기지 않는다. 남은 팀 행은 디렉터리와 비교해서 지워도 된다.
+     */
+    @Transactional
+    public Team saveTeam(String name) {
+        Team newTeam = new Team(name);
+        directory.persist(newTeam);
+        directory.flush();  // id 확정
+        inShard(shards.shardOf(newTeam.getId()), em -> em
+                .createNativeQuery("insert into team (id, name) values (?, ?)")
+                .setParameter(1, newTeam.getId())
+                .setParameter(2, name)
+                .executeUpdate());
+        return newTeam;
+    }
+
+    /**
+     * 기본 DB에서 id를 발급받아 팀이 속한 샤드에 저장한다. persist는 샤드의 생성기로 id를 새로 받으므로 id를 넣어서 insert 한다.
+     * 엔티티 리스너를 거치지 않으므로 데이터 버전은 직접 올린다.
+     */
+    @Transactional
+    public Member saveMember(String username, int age, Long teamId) {
+        Long id = nextMemberId();
+        Member saved = inShard(shards.shardOf(teamId), em -> {
+            insertMember(em, id, username, age, teamId, LocalDateTime.now());
+            return em.find(Member.class, id);  // 샤드 안에서는 팀 members 컬렉션을 로딩할 필요가 없다. (team은 지연 로딩)
+        });
+        memberDataVersion.bump();
+        return saved;
+    }
+
+    /**
+     * 회원 엔티티를 팀이 속한 샤드에 저장한다. (샤딩이 켜져 있을 때의 MemberRepository.save)
+     * 새 회원은 기본 DB의 생성기에서 받은 id를 엔티티에 채워서 넣고, id가 있는 회원은 대상 샤드에서 update 하고 없으면 insert 한다.
+     * 팀이 바뀌어 샤드가 달라졌으면 대상 샤드에 먼저 쓰고 다른 샤드의 같은 id 행을 지운다. (moveMembers와 같은 순서)
+     * 샤드의 회원은 기본 DB의 영속성 컨텍스트가 관리하지 않으므로 값을 바꾼 뒤에는 다시 save 해야 반영된다. (dirty checking 없음)
+     */
+    @Transactional
+    public <S extends Member> S save(S entity) {
+        Long teamId = entity.getTeam() == null ? null : entity.getTeam().getId();
+        int target = shards.shardOf(teamId);
+        if (entity.getId() == null) {
+            Long id = nextMemberId();
+            inShard(target, em -> insertMember(em, id, entity.getUsername(), entity.getAge(), teamId, entity.getLastActiveAt()));
+            SessionImplementor session = directory.unwrap(SessionImplementor.class);
+            memberPersister(session).setIdentifier(entity, id, session);
+        } else {
+            Long id = entity.getId();
+            inShard(target, em -> updateMember(em, entity, teamId) > 0
+                    ? 1 : insertMember(em, id, entity.getUsername(), entity.getAge(), teamId, entity.getLastActiveAt()));
+            for (int shard = 0; shard < shards.size(); shard++) {
+                if (shard != target) {
+                    inShard(shard, em -> deleteMember(em, id));  // 팀이 바뀌기 전 샤드. PK로 지우므로 샤드 수만큼의 짧은 쿼리다.
+                }
+            }
+        }
+        memberDataVersion.bump();
+        return entity;
+    }
+
+    /**
+     * id로 회원을 찾는다. 어느 샤드에 있는지 모르므로 모든 샤드에 PK 조회를 보낸다.
+     * 돌려주는 회원은 샤드의 EntityManager가 닫힌 준영속 엔티티다. team은 함께 읽어두지만 team.members는 읽을 수 없다.
+     */
+    public Optional<Member> findById(Long id) {
+        return gather(allShards(), shard -> readShard(shard, queryFactory -> memberQuery(queryFactory)
+                .where(member.id.eq(id))
+                .fetchOne()))
+                .stream()
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    public List<Member> findAll() {
+        return gatherMembers(queryFactory -> memberQuery(queryFactory).fetch());
+    }
+
+    public List<Member> findByUsername(String username) {
+        return gatherMembers(queryFactory -> memberQuery(queryFactory).where(member.username.eq(username)).fetch());
+    }
+
+    // 입력한 id 순서대로 돌려준다. 없는 id는 결과에서 빠진다.
+    public List<Member> findAllByIds(Collection<Long> ids) {
+        List<Long> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinct.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Member> found = gatherMembers(queryFactory -> InListPartitioner.partition(distinct).stream()
+                .flatMap(chunk -> memberQuery(queryFactory).where(member.id.in(chunk)).fetch().stream())
+                .toList())
+                .stream()
+                .collect(Collectors.toMap(Member::getId, Function.identity()));
+        return ids.stream().filter(Objects::nonNull).map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    // 입력한 username 순서대로, 같은 username은 id 순서대로 돌려준다.
+    public List<Member> findAllByUsernames(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return List.of();
+        }
+        Map<String, List<Member>> found = gatherMembers(queryFactory -> InListPartitioner.partition(usernames).stream()
+                .flatMap(chunk -> memberQuery(queryFactory).where(member.username.in(chunk)).fetch().stream())
+                .toList())
+                .stream()
+                .collect(Collectors.groupingBy(Member::getUsername));  // gatherMembers가 id 순서로 정렬해둔다.
+        return new LinkedHashSet<>(usernames).stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    public long count() {
+        return gather(allShards(), shard -> readShard(shard, queryFactory -> queryFactory
+                .select(member.count())
+                .from(member)
+                .fetchOne()))
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    public void deleteById(Long id) {
+        long deleted = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            deleted += inShard(shard, em -> deleteMember(em, id));
+        }
+        if (deleted > 0) {
+            memberDataVersion.bump();
+        }
+    }
+
+    /**
+     * 팀별 회원 목록. (TeamQueryRepository의 팀 페이지) 팀을 샤드별로 묶어서 샤드마다 한 번씩 병렬로 읽는다.
+     * 팀마다 회원은 id 순서이고, 회원이 없는 팀은 결과에 없다.
+     */
+    public Map<Long, List<MemberSummaryDto>> findMembersByTeamIds(Collection<Long> teamIds) {
+        Map<Integer, List<Long>> teamsByShard = teamIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.groupingBy(shards::shardOf));
+        QMemberSummaryDto summary = new QMemberSummaryDto(member.id, member.username, member.age);
+        List<List<Tuple>> rows = gather(teamsByShard.keySet().stream().sorted().toList(), shard -> readShard(shard, queryFactory ->
+                InListPartitioner.partition(teamsByShard.get(shard)).stream()
+                        .flatMap(chunk -> queryFactory
+                                .select(member.team.id, summary)
+                                .from(member)
+                                .where(member.team.id.in(chunk))  // team_id 외래 키로 바로 거르므로 team 조인이 필요 없다.
+                                .orderBy(member.team.id.asc(), member.id.asc())
+                                .fetch()
+                                .stream())
+                        .toList()));
+
+        Map<Long, List<MemberSummaryDto>> membersByTeam = new HashMap<>();
+        rows.forEach(shardRows -> shardRows.forEach(row -> membersByTeam
+                .computeIfAbsent(row.get(member.team.id), teamId -> new ArrayList<>())
+                .add(row.get(summary))));
+        return membersByTeam;
+    }
+
+    /**
+     * fromTeam 회원 중 predicate에 맞는 회원을 toTeam으로 옮긴다. predicate는 member 컬럼만 쓸 수 있다.
+     * 두 팀이 같은 샤드에 있으면 그 샤드에서 update 한 번으로 끝난다.
+     * 다른 샤드면 회원 행을 같은 id로 toTeam의 샤드에 넣고 원래 샤드에서 지운다. 두 샤드에 걸친 트랜잭션이 아니다.
+     * 팀 회원 전체를 메모리에 올리지 않도록 member_id 순으로 MOVE_CHUNK_SIZE 건씩 (keyset) 읽어서 청크마다 넣고 지운다.
+     * 청크의 insert는 JDBC 배치 하나로 보낸다.
+     * - 어느 청크에서 실패하면 앞 청크까지는 옮겨진 채로 남고 예외가 전파된다.
+     * - 넣은 뒤 지우기가 실패하면 그 청크의 회원이 두 샤드에 모두 남는다. 같은 호출을 다시 하면 대상 샤드의 같은 id 행을 지우고 다시 넣으므로 이어서 옮길 수 있다.
+     * 먼저 지우고 나중에 넣으면 실패했을 때 회원을 잃기 때문에 이 순서로 한다.
+     */
+    public long moveMembers(Long fromTeamId, Long toTeamId, Predicate predicate) {
+        int source = shards.shardOf(fromTeamId);
+        int target = shards.shardOf(toTeamId);
+        long count;
+        if (source == target) {
+            count = inShard(source, em -> new JPAQueryFactory(em)
+                    .update(member)
+                    .set(member.team, em.getReference(Team.class, toTeamId))
+                    .where(member.team.id.eq(fromTeamId), predicate)
+                    .execute());
+        } else {
+            count = 0;
+            Long lastId = null;
+            while (true) {
+                Long after = lastId;
+                List<Tuple> rows = readShard(source, queryFactory -> queryFactory
+                        .select(member.id, member.username, member.age, member.lastActiveAt)
+                        .from(member)
+                        .where(member.team.id.eq(fromTeamId), predicate, after == null ? null : member.id.gt(after))
+                        .orderBy(member.id.asc())
+                        .limit(MOVE_CHUNK_SIZE)
+                        .fetch());
+                if (rows.isEmpty()) {
+                    break;
+                }
+                // 청크가 InListPartitioner 청크 크기와 같으므로 IN 목록은 하나이고, 패딩되어 SQL 모양이 몇 가지로 고정된다.
+                List<Long> ids = InListPartitioner.partition(rows.stream().map(row -> row.get(member.id)).toList()).get(0);
+                inShard(target, em -> {
+                    new JPAQueryFactory(em).delete(member).where(member.id.in(ids)).execute();  // 지난번에 넣고 못 지운 행
+                    return insertMembers(em, rows, toTeamId);
+                });
+                count += inShard(source, em -> new JPAQueryFactory(em).delete(member).where(member.id.in(ids)).execute());
+                if (rows.size() < MOVE_CHUNK_SIZE) {
+                    break;
+                }
+                lastId = rows.get(rows.size() - 1).get(member.id);
+            }
+        }
+        if (count > 0) {
+            memberDataVersion.bump();  // 엔티티 리스너를 거치지 않는 변경
+        }
+        return count;
+    }
+
+    // 기본 DB에서 Member를 persist 할 때와 같은 생성기(풀링 포함)를 쓰므로 기본 DB의 회원과도 id가 겹치지 않는다.
+    private Long nextMemberId() {
+        SessionImplementor session = directory.unwrap(SessionImplementor.class);
+        return (Long) memberPersister(session).getIdentifierGenerator().generate(session, null);
+    }
+
+    private static EntityPersister memberPersister(SessionImplementor session) {
+        return session.getFactory().getMappingMetamodel().getEntityDescriptor(Member.class);
+    }
+
+    private static int insertMember(EntityManager em, Long id, String username, int age, Long teamId, LocalDateTime lastActiveAt) {
+        return em.createNativeQuery(INSERT_MEMBER)
+                .setParameter(1, id)
+                .setParameter(2, username)
+                .setParameter(3, age)
+                .setParameter(4, teamId)
+                .setParameter(5, lastActiveAt)
+                .executeUpdate();
+    }
+
+    // 청크의 회원을 toTeam으로 바꿔서 JDBC 배치 하나로 넣는다.
+    private static int[] insertMembers(EntityManager em, List<Tuple> rows, Long toTeamId) {
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_MEMBER)) {
+                for (Tuple row : rows) {
+                    LocalDateTime lastActiveAt = row.get(member.lastActiveAt);
+                    statement.setLong(1, row.get(member.id));
+                    statement.setString(2, row.get(member.username));
+                    statement.setInt(3, row.get(member.age));
+                    statement.setLong(4, toTeamId);
+                    statement.setTimestamp(5, lastActiveAt == null ? null : Timestamp.valueOf(lastActiveAt));
+                    statement.addBatch();
+                }
+                return statement.executeBatch();
+            }
+        });
+    }
+
+    private static int updateMember(EntityManager em, Member entity, Long teamId) {
+        return em.createNativeQuery("update member set username = ?, age = ?, team_id = ?, last_active_at = ? where member_id = ?")
+                .setParameter(1, entity.getUsername())
+                .setParameter(2, entity.getAge())
+                .setParameter(3, teamId)
+                .setParameter(4, entity.getLastActiveAt())
+                .setParameter(5, entity.getId())
+                .executeUpdate();
+    }
+
+    private static int deleteMember(EntityManager em, Long id) {
+        return em.createNativeQuery("delete from member where member_id = ?")
+                .setParameter(1, id)
+                .executeUpdate();
+    }
+
+    // 샤드의 EntityManager가 닫힌 뒤에도 회원의 팀을 읽을 수 있도록 팀을 함께 읽는다.
+    private static JPAQuery<Member> memberQuery(JPAQueryFactory queryFactory) {
+        return queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin();
+    }
+
+    // 모든 샤드에서 읽어서 id 순서로 합친다.
+    private List<Member> gatherMembers(Function<JPAQueryFactory, List<Member>> query) {
+        List<Member> merged = new ArrayList<>();
+        gather(allShards(), shard -> readShard(shard, query)).forEach(merged::addAll);
+        merged.sort(Comparator.comparing(Member::getId));
+        return merged;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        List<Integer> targets = targetShards(condition);
+        List<List<MemberTeamDto>> results = gather(targets, shard -> readShard(shard, queryFactory ->
+                searchQuery(queryFactory, condition).orderBy(member.id.asc()).fetch()));
+
+        return merge(results, Sort.unsorted());
+    }
+
+    /**
+     * member_id 순으로 앞쪽 limit 건. 샤드마다 limit 건까지만 읽어서 합친 뒤 다시 limit 건으로 자른다.
+     */
+    public List<MemberTeamDto> search(MemberSearchCondition condition, long limit) {
+        List<Integer> targets = targetShards(condition);
+        List<List<MemberTeamDto>> results = gather(targets, shard -> readShard(shard, queryFactory ->
+                searchQuery(queryFactory, condition).orderBy(member.id.asc()).limit(limit).fetch()));
+
+        return merge(results, Sort.unsorted()).stream().limit(limit).toList();
+    }
+
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        OrderSpecifier<?>[] sorted = MemberSort.orderBy(pageable.getSort());
+        OrderSpecifier<?>[] orders = sorted.length > 0 ? sorted : new OrderSpecifier<?>[]{member.id.asc()};  // 샤드마다 같은 순서로 정렬해야 합칠 수 있다.
+        List<Integer> targets = targetShards(condition);
+        long limit = pageable.getOffset() + pageable.getPageSize();  // 어느 샤드든 앞쪽 limit 건 안에 정답이 다 들어있다.
+
+        List<CompletableFuture<List<MemberTeamDto>>> contents = targets.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> readShard(shard, queryFactory ->
+                        searchQuery(queryFactory, condition).orderBy(orders).limit(limit).fetch()), executor))
+                .toList();
+        List<CompletableFuture<Long>> counts = targets.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> readShard(shard, queryFactory ->
+                        queryFactory
+                                .select(member.count())
+                                .from(member)
+                                .leftJoin(member.team, team)
+                                .where(MemberConditions.of(condition))
+                                .fetchOne()), executor))
+                .toList();
+
+        List<List<MemberTeamDto>> partials = contents.stream().map(CompletableFuture::join).toList();
+        List<MemberTeamDto> content = merge(partials, pageable.getSort()).stream()
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .toList();
+        long total = counts.stream().mapToLong(CompletableFuture::join).sum();
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    // teamName이 주어지면 그 이름의 팀이 있는 샤드만 조회한다. 팀이 하나로 정해지면 샤드도 하나다.
+    private List<Integer> targetShards(MemberSearchCondition condition) {
+        if (!hasText(condition.getTeamName())) {
+            return allShards();
+        }
+        List<Long> teamIds = directoryQueryFactory
+                .select(team.id)
+                .from(team)
+                .where(team.name.eq(condition.getTeamName()))
+                .fetch();
+        return teamIds.stream().map(shards::shardOf).distinct().sorted().toList();
+    }
+
+    private List<Integer> allShards() {
+        return IntStream.range(0, shards.size()).boxed().toList();
+    }
+
+    private <T> List<T> gather(List<Integer> targets, Function<Integer, T> task) {
+        List<CompletableFuture<T>> futures = targets.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> task.apply(shard), executor))
+                .toList();
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    // 샤드별로 이미 같은 순서로 정렬된 결과를 하나로 합친다. 회원 id가 샤드 전체에서 유일하므로 순서가 하나로 정해진다.
+    private static List<MemberTeamDto> merge(List<List<MemberTeamDto>> partials, Sort sort) {
+        List<MemberTeamDto> merged = new ArrayList<>();
+        partials.forEach(merged::addAll);
+        merged.sort(MemberSort.comparator(sort));  // 정렬된 목록끼리라 TimSort가 거의 병합만 한다.
+        return merged;
+    }
+
+    private JPAQuery<MemberTeamDto> searchQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(MemberConditions.of(condition));
+    }
+
+    private <T> T readShard(int shard, Function<JPAQueryFactory, T> query) {
+        EntityManager em = shards.get(shard).createEntityManager();
+        try {
+            return query.apply(new JPAQueryFactory(em));
+        } finally {
+            em.close();
+        }
+    }
+
+    private <T> T inShard(int shard, Function<EntityManager, T> work) {
+        EntityManagerFactory emf = shards.get(shard);
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            T result = work.apply(em);
+            tx.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,92 @@
+package study.querydsl.repository.sql;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.monitoring.jfr.RepositoryEvents;
+import study.querydsl.repository.MemberSort;
+import study.querydsl.repository.support.MemberConditions;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.repository.sql.SMember.member;
+import static study.querydsl.repository.sql.STeam.team;
+
+/**
+ * MemberRepositoryCustom.search/searchPage의 querydsl-sql 구현. (member.search.engine=sql)
+ * JPQL 변환, 엔티티/DTO 하이버네이트 결과 변환, 영속성 컨텍스트를 거치지 않고 SQL 결과를 바로 MemberTeamDto로 만든다.
+ * 커넥션은 트랜잭션이 있으면 그 커넥션을 같이 쓰므로 flush 된 변경은 보인다. (SqlConfig 참고)
+ */
+public class MemberSqlRepository {
+
+    // MemberSort와 같은 키. 인덱스 컬럼만 허용한다.
+    private static final Map<String, ComparableExpressionBase<?>> SORT_KEYS = Map.of(
+            "age", member.age,
+            "username", member.username,
+            "teamName", team.name,
+            "id", member.memberId,
+            "memberId", member.memberId);
+
+    private final SQLQueryFactory queryFactory;
+
+    public MemberSqlRepository(SQLQueryFactory queryFactory) {
+        this.queryFactory = queryFactory;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return QueryDeadline.apply(queryFactory
+                .select(MemberTeamRow.INSTANCE)
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.id))
+                .where(MemberConditions.of(condition, member.username, member.age, team.name)))
+                .fetch();
+    }
+
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        List<MemberTeamDto> content = RepositoryEvents.content(() -> QueryDeadline.apply(queryFactory
+                .select(MemberTeamRow.INSTANCE)
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.id))
+                .where(MemberConditions.of(condition, member.username, member.age, team.name))
+                .orderBy(orderBy(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize()), QueryDeadline.CONTENT_SHARE)
+                .fetch());
+
+        // JPA 경로와 같이 행을 가져와서 세지 않고 count(*)를 실행한다.
+        SQLQuery<Long> countQuery = queryFactory
+                .select(member.memberId.count())
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.id))
+                .where(MemberConditions.of(condition, member.username, member.age, team.name));
+        return PageableExecutionUtils.getPage(content, pageable, RepositoryEvents.count(() -> QueryDeadline.apply(countQuery).fetchOne()));
+    }
+
+    private static OrderSpecifier<?>[] orderBy(Sort sort) {
+        MemberSort.validate(sort);  // 허용하지 않는 키는 JPA 경로와 똑같이 거절한다.
+        if (sort.isUnsorted()) {
+            return new OrderSpecifier<?>[0];
+        }
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        boolean hasId = false;
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> path = SORT_KEYS.get(order.getProperty());
+            orders.add(order.isAscending() ? path.asc() : path.desc());
+            hasId |= path == member.memberId;
+        }
+        if (!hasId) {
+            orders.add(sort.iterator().next().isAscending() ? member.memberId.asc() : member.memberId.desc());
+        }
+        return orders.toArray(OrderSpecifier<?>[]::new);
+    }
+}
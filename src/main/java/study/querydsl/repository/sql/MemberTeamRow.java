@@ -0,0 +1,42 @@
+package study.querydsl.repository.sql;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.List;
+
+import static study.querydsl.repository.sql.SMember.member;
+import static study.querydsl.repository.sql.STeam.team;
+
+/**
+ * 조회한 컬럼 5개를 바로 MemberTeamDto 생성자에 넘긴다.
+ * Projections.constructor()는 생성자를 리플렉션으로 찾아 호출하지만 여기서는 직접 호출한다.
+ */
+final class MemberTeamRow extends FactoryExpressionBase<MemberTeamDto> {
+
+    static final MemberTeamRow INSTANCE = new MemberTeamRow();
+
+    private static final List<Expression<?>> COLUMNS = List.of(member.memberId, member.username, member.age, team.id, team.name);
+
+    private MemberTeamRow() {
+        super(MemberTeamDto.class);
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return COLUMNS;
+    }
+
+    @Override
+    public MemberTeamDto newInstance(Object... args) {
+        Integer age = (Integer) args[2];
+        return new MemberTeamDto((Long) args[0], (String) args[1], age == null ? 0 : age, (Long) args[3], (String) args[4]);
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+}
@@ -0,0 +1,41 @@
+package study.querydsl.repository.sql;
+
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.SQLTemplates;
+import com.querydsl.sql.SQLTemplatesRegistry;
+import com.querydsl.sql.spring.SpringExceptionTranslator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * member.search.engine=sql 이면 회원 검색을 querydsl-sql로 실행한다.
+ */
+@org.springframework.context.annotation.Configuration
+@ConditionalOnProperty(name = "member.search.engine", havingValue = "sql")
+public class SqlConfig {
+
+    @Bean
+    SQLQueryFactory sqlQueryFactory(DataSource dataSource) throws SQLException {
+        SQLTemplates templates;
+        try (Connection connection = dataSource.getConnection()) {
+            templates = new SQLTemplatesRegistry().getTemplates(connection.getMetaData());  // H2, MySQL 등 DB에 맞는 SQL 문법
+        }
+        Configuration configuration = new Configuration(templates);
+        configuration.setExceptionTranslator(new SpringExceptionTranslator());  // SQLException -> 스프링 DataAccessException
+
+        // 트랜잭션이 있으면 JPA 트랜잭션이 쓰는 커넥션을 받고, 없으면 풀에서 빌렸다가 쿼리가 끝나면 돌려준다.
+        // (트랜잭션 커넥션의 close()는 프록시가 무시한다)
+        return new SQLQueryFactory(configuration, new TransactionAwareDataSourceProxy(dataSource), true);
+    }
+
+    @Bean
+    MemberSqlRepository memberSqlRepository(SQLQueryFactory sqlQueryFactory) {
+        return new MemberSqlRepository(sqlQueryFactory);
+    }
+}
@@ -0,0 +1,114 @@
+package study.querydsl.repository.support;
+
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.util.Assert;
+
+import java.sql.SQLTransientException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 쿼리 지연 시간을 보고 동시에 실행할 수 있는 호출 수를 스스로 조절하는 리미터(gradient 방식).
+ * 평소 지연 시간(장기 평균)보다 최근 지연 시간이 길어지면 DB에 줄이 서고 있다는 뜻이므로 한도를 줄이고,
+ * 비슷하면 한도를 조금씩 늘린다. 한도를 넘는 호출은 커넥션을 기다리지 않고 바로 거절된다.
+ * 쿼리 타임아웃이나 커넥션 풀 고갈처럼 과부하로 실패한 호출은 지연 시간을 잴 수 없으므로 한도를 일정 비율(BACKOFF)로 바로 줄인다.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double TOLERANCE = 1.5;  // 장기 평균보다 1.5배 느려질 때까지는 정상으로 본다.
+    private static final double SMOOTHING = 0.2;  // 새 한도를 한 번에 다 반영하지 않고 20%씩만 반영
+    private static final int LONG_WINDOW = 600;  // 장기 평균(EMA)에 쓰는 샘플 수
+    private static final double BACKOFF = 0.9;  // 과부하로 실패하면 한도를 10% 줄인다.
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private double longRtt;  // 아래 값들은 onSample()의 synchronized 안에서만 바뀐다.
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        Assert.isTrue(0 < minLimit && minLimit <= initialLimit && initialLimit <= maxLimit, "Limits must satisfy 0 < min <= initial <= max!");
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public <T> T execute(Supplier<T> call) {
+        int current = inFlight.incrementAndGet();
+        if (current > (int) limit) {
+            inFlight.decrementAndGet();
+            throw new ConcurrencyLimitExceededException(name, getLimit());
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
+        boolean overloaded = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } catch (RuntimeException e) {
+            overloaded = isOverload(e);  // 그 밖의 실패(잘못된 요청 등)는 DB 상태와 관계없으므로 반영하지 않는다.
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+            if (success) {
+                onSample(System.nanoTime() - start, current);
+            } else if (overloaded) {
+                onDrop();
+            }
+        }
+    }
+
+    // 쿼리 타임아웃(QueryDeadline, JDBC 드라이버)과 커넥션을 얻지 못한 경우. 예외가 감싸져 있을 수 있으므로 cause까지 본다.
+    private static boolean isOverload(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof jakarta.persistence.QueryTimeoutException
+                    || cause instanceof SQLTransientException) {  // SQLTimeoutException, SQLTransientConnectionException(HikariCP)
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void onDrop() {
+        limit = Math.max(minLimit, limit * BACKOFF);
+    }
+
+    private synchronized void onSample(long rtt, int inFlightAtStart) {
+        longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / LONG_WINDOW;
+
+        // 부하가 오래 지속되면 장기 평균도 같이 올라가서 감지가 늦어진다. 최근 값보다 많이 높으면 평균을 끌어내린다.
+        if (longRtt / rtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / rtt));
+
+        // 한도의 절반도 쓰지 않고 있을 때는 한도를 늘릴 근거가 없다. 느려졌을 때 줄이는 것은 사용량과 관계없이 한다.
+        if (gradient >= 1.0 && inFlightAtStart < limit / 2) {
+            return;
+        }
+
+        double queueSize = Math.sqrt(limit);  // 한도가 클수록 조금 더 여유를 두고 늘린다.
+        double newLimit = limit * gradient + queueSize;
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
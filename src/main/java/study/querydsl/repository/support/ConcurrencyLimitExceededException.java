@@ -0,0 +1,19 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+/**
+ * AdaptiveConcurrencyLimiter 한도를 넘어 호출이 거절됐을 때 던진다. 컨트롤러에서 503 Service Unavailable로 바꾼다.
+ */
+@Getter
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private final String limiterName;
+    private final int limit;
+
+    public ConcurrencyLimitExceededException(String limiterName, int limit) {
+        super("Concurrency limit exceeded for " + limiterName + " (limit=" + limit + ")");
+        this.limiterName = limiterName;
+        this.limit = limit;
+    }
+}
@@ -0,0 +1,50 @@
+package study.querydsl.repository.support;
+
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * IN 절에 넣을 값 목록을 고정 크기 청크로 나누고, 각 청크를 2의 거듭제곱 크기로 패딩한다.
+ * 파라미터 개수가 매번 달라지면 Hibernate 쿼리 플랜 캐시와 DB 실행 계획이 재사용되지 않기 때문에
+ * 개수를 1, 2, 4, 8 ... 처럼 몇 가지로 고정해서 같은 SQL이 나오도록 만든다.
+ */
+public final class InListPartitioner {
+
+    public static final int DEFAULT_CHUNK_SIZE = 512;  // 2의 거듭제곱이어야 패딩 후에도 청크 크기를 넘지 않는다.
+
+    private InListPartitioner() {
+    }
+
+    public static <T> List<List<T>> partition(Collection<T> values) {
+        return partition(values, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static <T> List<List<T>> partition(Collection<T> values, int chunkSize) {
+        Assert.isTrue(chunkSize > 0 && Integer.bitCount(chunkSize) == 1, "Chunk size must be a power of two!");
+
+        List<T> distinct = new ArrayList<>(new LinkedHashSet<>(values));  // 중복 값은 IN 절에 한 번만 넣으면 된다.
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            List<T> chunk = new ArrayList<>(distinct.subList(from, Math.min(from + chunkSize, distinct.size())));
+            pad(chunk);
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    // 마지막 값을 반복해서 채운다. IN (1, 2, 3, 3) 은 IN (1, 2, 3) 과 결과가 같다.
+    private static <T> void pad(List<T> chunk) {
+        int padded = Integer.highestOneBit(chunk.size());
+        if (padded < chunk.size()) {
+            padded <<= 1;
+        }
+        T last = chunk.get(chunk.size() - 1);
+        while (chunk.size() < padded) {
+            chunk.add(last);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+
+/**
+ * 리포지토리에서 쓰는 JPAQueryFactory. 만들어지는 모든 JPAQuery에
+ * - QueryDeadline의 남은 시간을 타임아웃 힌트로 넣고
+ * - fetch 할 때마다 트레이싱 span(observation)을 남기는 TracedJPAQuery를 사용한다.
+ * - 실행 전에 비상관 스칼라 서브쿼리를 ScalarSubqueries로 계산해서 값으로 바꾼다. 넘기지 않으면 캐시 없이 계산한다.
+ * select(), selectFrom() 등은 모두 query()를 거치므로 여기 한 곳만 바꾸면 된다.
+ */
+public class InstrumentedJPAQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager entityManager;
+    private final ObservationRegistry observationRegistry;
+    private final ScalarSubqueries scalarSubqueries;
+
+    private final JPQLTemplates templates;
+
+    public InstrumentedJPAQueryFactory(EntityManager entityManager, ObservationRegistry observationRegistry) {
+        this(entityManager, observationRegistry, ScalarSubqueries.NO_CACHE);
+    }
+
+    public InstrumentedJPAQueryFactory(EntityManager entityManager, ObservationRegistry observationRegistry,
+                                       ScalarSubqueries scalarSubqueries) {
+        super(entityManager);
+        this.entityManager = entityManager;
+        this.observationRegistry = observationRegistry;
+        this.scalarSubqueries = scalarSubqueries;
+        this.templates = null;  // EntityManager를 보고 정한다. (하이버네이트면 HQLTemplates)
+    }
+
+    /**
+     * GroupBy transform()을 쓸 때는 JPQLTemplates.DEFAULT를 넘긴다.
+     * HQLTemplates는 결과를 하이버네이트 ScrollableResults로 읽는데 하이버네이트 6에서 API가 바뀌어 동작하지 않는다.
+     */
+    public InstrumentedJPAQueryFactory(JPQLTemplates templates, EntityManager entityManager, ObservationRegistry observationRegistry) {
+        this(templates, entityManager, observationRegistry, ScalarSubqueries.NO_CACHE);
+    }
+
+    public InstrumentedJPAQueryFactory(JPQLTemplates templates, EntityManager entityManager, ObservationRegistry observationRegistry,
+                                       ScalarSubqueries scalarSubqueries) {
+        super(templates, entityManager);
+        this.entityManager = entityManager;
+        this.observationRegistry = observationRegistry;
+        this.scalarSubqueries = scalarSubqueries;
+        this.templates = templates;
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        TracedJPAQuery<Void> query = templates == null
+                ? new TracedJPAQuery<>(entityManager, observationRegistry, scalarSubqueries)
+                : new TracedJPAQuery<>(entityManager, templates, observationRegistry, scalarSubqueries);
+        return QueryDeadline.apply(query);
+    }
+}
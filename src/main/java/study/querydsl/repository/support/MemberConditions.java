@@ -0,0 +1,36 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.StringExpression;
+import study.querydsl.dto.MemberSearchCondition;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색 조건(MemberSearchCondition)을 where 절 조건으로 바꾼다.
+ * 회원 엔티티, 보관 회원(member_archive), querydsl-sql 테이블처럼 경로만 다르고 조건은 같으므로 경로를 받아서 만든다.
+ * 값이 없는 조건은 null이라서 where()에 그대로 넘기면 빠진다.
+ */
+public final class MemberConditions {
+
+    private MemberConditions() {
+    }
+
+    // member left join team 으로 조회하는 JPA 쿼리
+    public static BooleanExpression[] of(MemberSearchCondition condition) {
+        return of(condition, member.username, member.age, team.name);
+    }
+
+    public static BooleanExpression[] of(MemberSearchCondition condition,
+                                         StringExpression username, NumberExpression<Integer> age, StringExpression teamName) {
+        return new BooleanExpression[]{
+                hasText(condition.getUsername()) ? username.eq(condition.getUsername()) : null,
+                hasText(condition.getTeamName()) ? teamName.eq(condition.getTeamName()) : null,
+                condition.getAgeGoe() != null ? age.goe(condition.getAgeGoe()) : null,
+                condition.getAgeLoe() != null ? age.loe(condition.getAgeLoe()) : null
+        };
+    }
+}
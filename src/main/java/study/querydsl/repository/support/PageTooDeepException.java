@@ -0,0 +1,17 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+/**
+ * 앞쪽 offset + size 건을 모두 읽어야 하는 조회에서 페이지가 한도보다 뒤에 있을 때 던진다. 컨트롤러에서 400 Bad Request로 바꾼다.
+ */
+@Getter
+public class PageTooDeepException extends RuntimeException {
+
+    private final long maxRows;
+
+    public PageTooDeepException(long maxRows) {
+        super("Pages beyond the first " + maxRows + " rows are not supported");
+        this.maxRows = maxRows;
+    }
+}
@@ -0,0 +1,100 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.StatementOptions;
+import jakarta.persistence.Query;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청 단위 마감 시각을 스레드에 들고 다니면서 쿼리 타임아웃 힌트로 넣어준다.
+ * 클라이언트가 이미 포기한 요청의 쿼리가 DB에서 계속 돌지 않도록, 남은 시간이 지나면 JDBC 드라이버가 statement를 취소한다.
+ * 마감 시각이 설정되지 않은 스레드(배치, 테스트 등)에서는 아무것도 하지 않는다.
+ *
+ * JDBC 타임아웃은 초 단위이므로 남은 시간을 초 단위로 내림해서 넣는다. 올림하면 쿼리마다 마감 시각을 넘겨서 기다리게 된다.
+ * 남은 시간이 1초 미만이면 타임아웃을 걸 수 없으므로(0초 = 타임아웃 없음) DB에 보내지 않고 바로 실패한다.
+ */
+public final class QueryDeadline {
+
+    public static final String TIMEOUT_HINT = "jakarta.persistence.query.timeout";  // 밀리초
+    public static final double CONTENT_SHARE = 0.5;  // 페이지 조회는 남은 시간의 절반을 content 쿼리에, 나머지를 count 쿼리에 쓴다.
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();  // System.nanoTime() 기준
+
+    private QueryDeadline() {
+    }
+
+    public static void start(Duration budget) {
+        DEADLINE.set(System.nanoTime() + budget.toNanos());
+    }
+
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * 마감 시각까지 남은 시간. 이미 지났으면 0 이하, 마감 시각이 없는 스레드면 empty
+     */
+    public static Optional<Duration> remaining() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? Optional.empty() : Optional.of(Duration.ofNanos(deadline - System.nanoTime()));
+    }
+
+    public static <Q extends JPAQuery<?>> Q apply(Q query) {
+        return apply(query, 1.0);
+    }
+
+    public static <Q extends JPAQuery<?>> Q apply(Q query, double share) {
+        Integer timeout = timeoutMillis(share);
+        if (timeout != null) {
+            query.setHint(TIMEOUT_HINT, timeout);  // 나중에 넣은 힌트가 우선 적용된다.
+        }
+        return query;
+    }
+
+    public static <Q extends Query> Q apply(Q query) {
+        return apply(query, 1.0);
+    }
+
+    public static <Q extends Query> Q apply(Q query, double share) {
+        Integer timeout = timeoutMillis(share);
+        if (timeout != null) {
+            query.setHint(TIMEOUT_HINT, timeout);
+        }
+        return query;
+    }
+
+    // querydsl-sql 쿼리는 JPA 힌트 대신 statement 옵션(초 단위)으로 넣는다.
+    public static <Q extends SQLQuery<?>> Q apply(Q query) {
+        return apply(query, 1.0);
+    }
+
+    public static <Q extends SQLQuery<?>> Q apply(Q query, double share) {
+        Integer timeout = timeoutMillis(share);
+        if (timeout != null) {
+            query.setStatementOptions(StatementOptions.builder().setQueryTimeout(timeout / 1000).build());
+        }
+        return query;
+    }
+
+    private static Integer timeoutMillis(double share) {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return null;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining < 1000) {
+            // 이미 늦었거나 1초 타임아웃도 마감 시각을 넘긴다. DB에 보내지도 않는다.
+            throw new QueryTimeoutException("Request deadline exceeded before query execution");
+        }
+
+        // JDBC Statement.setQueryTimeout()은 초 단위라서 하이버네이트가 밀리초 힌트를 초로 바꾼다. 초 단위로 내림해서 넘긴다.
+        // 몫이 1초 미만이어도 전체 남은 시간은 1초 이상이므로 1초를 준다. 뒤 쿼리는 남은 시간에서 다시 계산하므로 합이 마감 시각을 넘지 않는다.
+        long seconds = Math.max(1, (long) (remaining * share) / 1000);
+        return (int) Math.min(Integer.MAX_VALUE / 1000, seconds) * 1000;
+    }
+}
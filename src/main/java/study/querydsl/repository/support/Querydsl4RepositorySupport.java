@@ -5,8 +5,11 @@ import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
+import org.hibernate.FlushMode;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -16,7 +19,9 @@ import org.springframework.data.jpa.repository.support.Querydsl;
 import org.springframework.data.querydsl.SimpleEntityPathResolver;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
+import study.querydsl.monitoring.jfr.RepositoryEvents;
 
 import java.util.List;
 import java.util.function.Function;
@@ -28,6 +33,8 @@ public abstract class Querydsl4RepositorySupport {
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private ObservationRegistry observationRegistry;
+    private ScalarSubqueries scalarSubqueries;
 
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
@@ -45,12 +52,27 @@ public abstract class Querydsl4RepositorySupport {
         this.entityManager = entityManager;
         this.querydsl = new Querydsl(entityManager, new
                 PathBuilder<>(path.getType(), path.getMetadata()));
-        this.queryFactory = new JPAQueryFactory(entityManager);
+    }
+
+    @Autowired
+    public void setObservationRegistry(ObservationRegistry observationRegistry) {
+        Assert.notNull(observationRegistry, "ObservationRegistry must not be null!");
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Autowired
+    public void setScalarSubqueries(ScalarSubqueries scalarSubqueries) {
+        Assert.notNull(scalarSubqueries, "ScalarSubqueries must not be null!");
+        this.scalarSubqueries = scalarSubqueries;
     }
 
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
+        Assert.notNull(observationRegistry, "ObservationRegistry must not be null!");
+        Assert.notNull(scalarSubqueries, "ScalarSubqueries must not be null!");
+        // setter 주입 순서는 보장되지 않으므로 모두 주입된 뒤에 만든다. (요청 마감 시각 전달 + 쿼리 span + 서브쿼리 캐시)
+        this.queryFactory = new InstrumentedJPAQueryFactory(entityManager, observationRegistry, scalarSubqueries);
         Assert.notNull(querydsl, "Querydsl must not be null!");
         Assert.notNull(queryFactory, "QueryFactory must not be null!");
     }
@@ -75,6 +97,31 @@ public abstract class Querydsl4RepositorySupport {
         return getQueryFactory().selectFrom(from);
     }
 
+    /**
+     * 읽기 전용 조회 모드. 조회한 엔티티를 수정하지 않을 때 사용한다.
+     * - org.hibernate.readOnly: 더티 체킹용 스냅샷(엔티티 상태 복사본)을 만들지 않아서 엔티티당 메모리가 줄고 flush 때 검사 대상에서 빠진다.
+     * - FlushMode.MANUAL: 쿼리 전에 auto flush를 하지 않는다. 단, 쓰기 트랜잭션 안에서는 아직 반영 안 된 변경을 못 보게 되므로
+     *   읽기 전용 트랜잭션이거나 트랜잭션 밖(매번 새 영속성 컨텍스트)일 때만 적용한다.
+     * 읽기 전용으로 조회된 엔티티는 값을 바꿔도 DB에 반영되지 않는다.
+     */
+    public static <Q extends JPAQuery<?>> Q readOnly(Q query) {
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            query.setHint(HibernateHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+        }
+        return query;
+    }
+
+    // 읽기 전용 조회 모드로 페이징한다. content, count 쿼리 모두 readOnly()를 적용한다.
+    protected <T> Page<T> applyPaginationReadOnly(Pageable pageable,
+                                                  Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                                  Function<JPAQueryFactory, JPAQuery> countQuery) {
+        return applyPagination(pageable,
+                contentQuery.andThen(Querydsl4RepositorySupport::readOnly),
+                countQuery.andThen(Querydsl4RepositorySupport::readOnly));
+    }
+
 //    protected <T> Page<T> applyPagination(Pageable pageable,
 //                                          Function<JPAQueryFactory, JPAQuery> contentQuery) {
 //        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
@@ -86,9 +133,10 @@ public abstract class Querydsl4RepositorySupport {
                                           Function<JPAQueryFactory, JPAQuery> contentQuery,
                                           Function<JPAQueryFactory, JPAQuery> countQuery) {
         JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch();
+        List<T> content = RepositoryEvents.content(() -> QueryDeadline.apply(getQuerydsl().applyPagination(pageable, jpaContentQuery), QueryDeadline.CONTENT_SHARE)
+                .fetch());  // 남은 시간의 일부만 content 쿼리에 주고 나머지는 count 쿼리 몫으로 남긴다.
 
         JPAQuery countResult = countQuery.apply(getQueryFactory());
-        return PageableExecutionUtils.getPage(content, pageable, countResult.fetch()::size);
+        return PageableExecutionUtils.getPage(content, pageable, RepositoryEvents.count(() -> countResult.fetch().size()));  // 필요할 때만 count 쿼리 실행
     }
 }
\ No newline at end of file
@@ -0,0 +1,395 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.support.ReplaceVisitor;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.ConstantImpl;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import jakarta.persistence.EntityManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 바깥 쿼리를 참조하지 않는 스칼라 서브쿼리를 쿼리 실행 전에 한 번만 계산해서 값으로 바꿔 넣는다.
+ * 예) where member.age = (select max(memberSub.age) from Member memberSub)
+ *     -> select max(...) 를 먼저 실행하고 where member.age = 40 으로 보낸다.
+ * DB 옵티마이저가 서브쿼리를 행마다 다시 평가하거나 조인으로 잘못 풀면 회원 수에 비례해서 느려지는데, 이를 피한다.
+ *
+ * 바꾸는 대상
+ * - where 절: 집계 함수 하나를 select 하고 group by가 없는 서브쿼리 (결과가 항상 0~1행)
+ * - select 절: Tuple, Projections.fields() 등의 인자로 바로 들어간 같은 조건의 서브쿼리. SQL에서 빼고 결과 객체를 만들 때 값을 채운다.
+ * 바깥 쿼리의 별칭을 참조하는(상관) 서브쿼리, 이름 있는 파라미터가 있는 서브쿼리는 그대로 둔다.
+ *
+ * 계산한 값은 TTL을 주면 (서브쿼리 JPQL, 상수, 데이터 버전) 단위로 잠깐 캐시한다. 캐시는 인스턴스마다 따로 가지며
+ * 애플리케이션에서는 ScalarSubqueryCacheConfig가 만든 빈 하나를 InstrumentedJPAQueryFactory에 넣어 쓴다.
+ * 읽기-쓰기 트랜잭션 안에서는 아직 flush 되지 않은 변경이 있을 수 있으므로 캐시를 쓰지 않고 매번 계산한다.
+ */
+public final class ScalarSubqueries {
+
+    private static final Set<Operator> AGGREGATES = Set.of(
+            Ops.AggOps.MAX_AGG, Ops.AggOps.MIN_AGG, Ops.AggOps.AVG_AGG, Ops.AggOps.SUM_AGG,
+            Ops.AggOps.COUNT_AGG, Ops.AggOps.COUNT_DISTINCT_AGG, Ops.AggOps.COUNT_ALL_AGG);
+
+    private static final int MAX_CACHE_ENTRIES = 1_000;
+
+    /**
+     * 캐시 없이 쿼리 실행마다 한 번씩 계산한다. 상태가 없으므로 어디서든 같이 써도 된다.
+     */
+    public static final ScalarSubqueries NO_CACHE = new ScalarSubqueries(Duration.ZERO, () -> 0L);
+
+    private final Map<CacheKey, CachedValue> cache = new ConcurrentHashMap<>();
+    private final long ttlNanos;  // 0이면 캐시하지 않고 쿼리 실행마다 한 번씩 계산한다.
+    private final LongSupplier dataVersion;
+
+    public ScalarSubqueries(Duration ttl, LongSupplier dataVersion) {
+        this.ttlNanos = ttl.toNanos();
+        this.dataVersion = dataVersion;
+    }
+
+    /**
+     * 바꿀 서브쿼리가 있으면 바꾼 복사본을, 없으면 null을 돌려준다. 원래 쿼리는 건드리지 않는다.
+     */
+    public <T> JPAQuery<T> rewrite(JPAQuery<T> query, EntityManager entityManager, JPQLTemplates templates) {
+        QueryMetadata metadata = query.getMetadata();
+        if (!hasSubQuery(metadata.getWhere()) && !hasSubQuery(metadata.getProjection())) {
+            return null;  // 대부분의 쿼리는 여기서 끝난다.
+        }
+
+        Evaluator evaluator = new Evaluator(entityManager, templates);
+        Predicate where = metadata.getWhere() == null ? null : (Predicate) metadata.getWhere().accept(evaluator, null);
+        Expression<?> projection = injectProjection(metadata.getProjection(), evaluator);
+        if (evaluator.values.isEmpty()) {
+            return null;
+        }
+
+        JPAQuery<T> rewritten = query.clone(entityManager);
+        QueryMetadata copy = rewritten.getMetadata();
+        if (where != null) {
+            copy.clearWhere();
+            copy.addWhere(where);
+        }
+        if (projection != null) {
+            copy.setProjection(projection);
+        }
+        return rewritten;
+    }
+
+    // select 절 인자 중 바꿀 수 있는 서브쿼리는 SQL에서 빼고, 결과 객체를 만들 때 계산한 값을 그 자리에 넣는다.
+    // 파라미터를 select 절에 두면 하이버네이트가 타입을 정하지 못하는 경우가 있어서 값을 SQL로 보내지 않는다.
+    private static Expression<?> injectProjection(Expression<?> projection, Evaluator evaluator) {
+        if (!(projection instanceof FactoryExpression<?> factory)) {
+            return null;
+        }
+        List<Expression<?>> args = factory.getArgs();
+        Map<Integer, Object> injected = new HashMap<>();  // null 값도 넣을 수 있어야 한다.
+        List<Expression<?>> remaining = new ArrayList<>();
+        for (int i = 0; i < args.size(); i++) {
+            SubQueryExpression<?> subQuery = unalias(args.get(i));
+            if (subQuery != null && isRewritable(subQuery)) {
+                injected.put(i, evaluator.evaluate(subQuery));
+            } else {
+                remaining.add(args.get(i));
+            }
+        }
+        if (injected.isEmpty() || remaining.isEmpty()) {
+            return null;  // select 할 컬럼이 하나도 남지 않으면 그대로 보낸다.
+        }
+        return new InjectedFactoryExpression<>(factory, remaining, injected);
+    }
+
+    private static SubQueryExpression<?> unalias(Expression<?> arg) {
+        if (arg instanceof Operation<?> operation && operation.getOperator() == Ops.ALIAS) {
+            arg = operation.getArg(0);  // ExpressionUtils.as(서브쿼리, "age")
+        }
+        return arg instanceof SubQueryExpression<?> subQuery ? subQuery : null;
+    }
+
+    static boolean isRewritable(SubQueryExpression<?> subQuery) {
+        QueryMetadata metadata = subQuery.getMetadata();
+        return metadata.getProjection() instanceof Operation<?> projection
+                && AGGREGATES.contains(projection.getOperator())
+                && metadata.getGroupBy().isEmpty()
+                && !metadata.isDistinct()
+                && isUncorrelated(subQuery);
+    }
+
+    // 서브쿼리 안에서 쓰는 모든 경로의 루트가 서브쿼리의 from/join에 선언된 별칭이어야 한다.
+    static boolean isUncorrelated(SubQueryExpression<?> subQuery) {
+        Set<Path<?>> free = freeRoots(subQuery);
+        return free != null && free.isEmpty();
+    }
+
+    // 서브쿼리가 바깥에서 빌려 쓰는 별칭들. 값이 정해지지 않은 파라미터가 있으면 null
+    private static Set<Path<?>> freeRoots(SubQueryExpression<?> subQuery) {
+        QueryMetadata metadata = subQuery.getMetadata();
+        Set<Path<?>> declared = new HashSet<>();
+        Set<Path<?>> used = new HashSet<>();
+        for (JoinExpression join : metadata.getJoins()) {
+            Expression<?> target = join.getTarget();
+            if (target instanceof Operation<?> alias && alias.getOperator() == Ops.ALIAS) {
+                if (!collect(alias.getArg(0), used)) {
+                    return null;
+                }
+                declared.add(((Path<?>) alias.getArg(1)).getRoot());  // join(memberSub.team, teamSub)
+            } else if (target instanceof Path<?> path && path.getMetadata().isRoot()) {
+                declared.add(path);  // from(memberSub)
+            } else if (!collect(target, used)) {
+                return null;
+            }
+            if (!collect(join.getCondition(), used)) {
+                return null;
+            }
+        }
+        List<Expression<?>> expressions = new ArrayList<>(metadata.getGroupBy());
+        expressions.add(metadata.getWhere());
+        expressions.add(metadata.getHaving());
+        expressions.add(metadata.getProjection());
+        for (OrderSpecifier<?> order : metadata.getOrderBy()) {
+            expressions.add(order.getTarget());
+        }
+        for (Expression<?> expression : expressions) {
+            if (!collect(expression, used)) {
+                return null;
+            }
+        }
+        used.removeAll(declared);
+        return used;
+    }
+
+    private static boolean collect(Expression<?> expression, Set<Path<?>> roots) {
+        if (expression == null) {
+            return true;
+        }
+        if (expression instanceof ParamExpression<?>) {
+            return false;  // 값이 바인딩 시점에 정해진다.
+        }
+        if (expression instanceof Path<?> path) {
+            roots.add(path.getRoot());
+            return true;
+        }
+        if (expression instanceof SubQueryExpression<?> nested) {
+            Set<Path<?>> free = freeRoots(nested);
+            if (free == null) {
+                return false;
+            }
+            roots.addAll(free);
+            return true;
+        }
+        List<?> args = expression instanceof Operation<?> operation ? operation.getArgs()
+                : expression instanceof TemplateExpression<?> template ? template.getArgs()
+                : expression instanceof FactoryExpression<?> factory ? factory.getArgs()
+                : List.of();  // 상수
+        for (Object arg : args) {
+            if (arg instanceof Expression<?> child && !collect(child, roots)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasSubQuery(Expression<?> expression) {
+        if (expression instanceof SubQueryExpression<?>) {
+            return true;
+        }
+        List<?> args = expression instanceof Operation<?> operation ? operation.getArgs()
+                : expression instanceof TemplateExpression<?> template ? template.getArgs()
+                : expression instanceof FactoryExpression<?> factory ? factory.getArgs()
+                : List.of();
+        for (Object arg : args) {
+            if (arg instanceof Expression<?> child && hasSubQuery(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 숫자는 리터럴로 넣는다. 파라미터로 넣으면 하이버네이트 6이 비교 대상의 타입(예: Integer)으로 파라미터 타입을 정하는데
+    // avg()의 결과(Double)를 바인딩하면 타입이 맞지 않는다고 거절한다. 값은 DB가 돌려준 숫자이므로 SQL 주입 걱정은 없다.
+    @SuppressWarnings("unchecked")
+    private static Expression<?> constant(SubQueryExpression<?> subQuery, Object value) {
+        Class<Object> type = (Class<Object>) subQuery.getType();
+        String literal = value instanceof Long ? value + "L"
+                : value instanceof BigDecimal decimal ? decimal.toPlainString() + "BD"
+                : value instanceof BigInteger ? value + "BI"
+                : value instanceof Number ? value.toString()
+                : null;
+        return literal != null
+                ? Expressions.template(type, literal)
+                : ConstantImpl.create(value);
+    }
+
+    /**
+     * where 절을 따라가면서 바꿀 수 있는 서브쿼리를 계산한 값으로 바꾼다.
+     * 같은 쿼리 안에 같은 서브쿼리가 여러 번 나오면 한 번만 실행한다.
+     */
+    private final class Evaluator extends ReplaceVisitor<Void> {
+
+        private final EntityManager entityManager;
+        private final JPQLTemplates templates;
+        private final Map<SubQueryExpression<?>, Object> values = new HashMap<>();
+
+        private Evaluator(EntityManager entityManager, JPQLTemplates templates) {
+            this.entityManager = entityManager;
+            this.templates = templates;
+        }
+
+        @Override
+        public Expression<?> visit(SubQueryExpression<?> expr, Void context) {
+            if (!isRewritable(expr)) {
+                return super.visit(expr, context);  // 상관 서브쿼리 안의 비상관 서브쿼리는 바꾼다.
+            }
+            Object value = evaluate(expr);
+            // 하이버네이트 6은 "= null"을 "is null"로 바꿔버리므로 빈 집계(null)는 서브쿼리를 그대로 둔다.
+            return value == null ? expr : constant(expr, value);
+        }
+
+        Object evaluate(SubQueryExpression<?> subQuery) {
+            if (values.containsKey(subQuery)) {
+                return values.get(subQuery);
+            }
+            JPAQuery<?> query = new JPAQuery<>(entityManager, templates, subQuery.getMetadata().clone());
+            Object value = cacheable() ? cached(query) : QueryDeadline.apply(query).fetchOne();
+            values.put(subQuery, value);
+            return value;
+        }
+
+        private Object cached(JPAQuery<?> query) {
+            long now = System.nanoTime();
+            CacheKey key = new CacheKey(query.toString(), constants(query), dataVersion.getAsLong());
+            CachedValue cached = cache.get(key);
+            if (cached != null && now - cached.expiresAt() < 0) {
+                return cached.value();
+            }
+            Object value = QueryDeadline.apply(query).fetchOne();
+            if (cache.size() >= MAX_CACHE_ENTRIES) {
+                cache.clear();  // 데이터 버전이 바뀌면 이전 키는 다시 쓰이지 않으므로 한 번에 비운다.
+            }
+            cache.put(key, new CachedValue(value, now + ttlNanos));
+            return value;
+        }
+
+        private boolean cacheable() {
+            return ttlNanos > 0
+                    && (!TransactionSynchronizationManager.isActualTransactionActive()
+                    || TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+        }
+
+        // JPQL에는 상수가 ?1 로만 나오므로 값도 키에 넣는다.
+        private static List<Object> constants(JPAQuery<?> query) {
+            List<Object> constants = new ArrayList<>();
+            collectConstants(query.getMetadata().getWhere(), constants);
+            collectConstants(query.getMetadata().getHaving(), constants);
+            for (JoinExpression join : query.getMetadata().getJoins()) {
+                collectConstants(join.getCondition(), constants);
+            }
+            return constants;
+        }
+
+        private static void collectConstants(Expression<?> expression, List<Object> constants) {
+            if (expression instanceof Constant<?> constant) {
+                constants.add(constant.getConstant());
+                return;
+            }
+            if (expression instanceof SubQueryExpression<?> nested) {
+                collectConstants(nested.getMetadata().getWhere(), constants);
+                collectConstants(nested.getMetadata().getHaving(), constants);
+                return;
+            }
+            List<?> args = expression instanceof Operation<?> operation ? operation.getArgs()
+                    : expression instanceof TemplateExpression<?> template ? template.getArgs()
+                    : List.of();
+            for (Object arg : args) {
+                if (arg instanceof Expression<?> child) {
+                    collectConstants(child, constants);
+                } else if (arg != null) {
+                    constants.add(arg);  // 템플릿의 상수 인자
+                }
+            }
+        }
+    }
+
+    private record CacheKey(String jpql, List<Object> constants, long dataVersion) {
+    }
+
+    private record CachedValue(Object value, long expiresAt) {
+    }
+
+    /**
+     * SQL로 보내는 인자(remaining)로 만든 행에 계산해둔 서브쿼리 값을 원래 위치에 끼워서 원래 projection으로 결과를 만든다.
+     * Tuple.get(서브쿼리)도 원래 인자 목록을 기준으로 찾으므로 그대로 동작한다.
+     */
+    private static final class InjectedFactoryExpression<T> extends FactoryExpressionBase<T> {
+
+        private final FactoryExpression<T> delegate;
+        private final List<Expression<?>> remaining;
+        private final Map<Integer, Object> injected;
+
+        private InjectedFactoryExpression(FactoryExpression<T> delegate, List<Expression<?>> remaining,
+                                          Map<Integer, Object> injected) {
+            super(delegate.getType());
+            this.delegate = delegate;
+            this.remaining = remaining;
+            this.injected = injected;
+        }
+
+        @Override
+        public List<Expression<?>> getArgs() {
+            return remaining;
+        }
+
+        @Override
+        public T newInstance(Object... args) {
+            Object[] full = new Object[delegate.getArgs().size()];
+            int next = 0;
+            for (int i = 0; i < full.length; i++) {
+                full[i] = injected.containsKey(i) ? injected.get(i) : args[next++];
+            }
+            return delegate.newInstance(full);
+        }
+
+        @Override
+        public <R, C> R accept(Visitor<R, C> v, C context) {
+            return v.visit(this, context);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof InjectedFactoryExpression<?> other
+                    && delegate.equals(other.delegate)
+                    && injected.equals(other.injected);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(delegate, injected);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.repository.support;
+
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키로 동시에 들어온 호출을 하나로 합친다.
+ * 먼저 들어온 호출(leader)만 실제로 실행하고, 실행 중에 들어온 나머지 호출(follower)은 그 결과를 같이 받는다.
+ * 실행이 끝나면 키를 지우기 때문에 결과를 캐시하지는 않는다.
+ * follower는 자기 요청의 마감 시각(QueryDeadline)까지만 기다리고, 지나면 직접 쿼리를 실행했을 때처럼 QueryTimeoutException을 받는다.
+ * leader가 타임아웃으로 실패하면 그것은 leader의 마감 시각 때문이므로, 시간이 남은 follower는 그 예외를 받지 않고 다시 실행한다.
+ * (다시 들어가서 먼저 온 follower가 새 leader가 되고 나머지는 그 결과를 받는다)
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public Result<V> execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing;
+        while ((existing = inFlight.putIfAbsent(key, mine)) != null) {
+            try {
+                return new Result<>(await(existing), false);
+            } catch (RuntimeException e) {
+                // 자기 마감 시각이 지나서 그만 기다린 경우는 future가 아직 끝나지 않았다. leader가 타임아웃으로 끝난 경우만 다시 한다.
+                if (!(existing.isCompletedExceptionally() && isTimeout(e) && hasTimeLeft())) {
+                    throw e;
+                }
+            }
+        }
+
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return new Result<>(value, true);
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);  // 기다리던 follower도 같은 예외를 받는다.
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        Optional<Duration> remaining = QueryDeadline.remaining();
+        try {
+            return remaining.isPresent()
+                    ? future.get(remaining.get().toNanos(), TimeUnit.NANOSECONDS)  // 0 이하면 끝났는지만 보고 바로 돌아온다.
+                    : future.get();  // 마감 시각이 없는 스레드(배치 등)는 leader가 끝날 때까지 기다린다.
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Request deadline exceeded while waiting for a coalesced query");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueryTimeoutException || cause instanceof jakarta.persistence.QueryTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasTimeLeft() {
+        return QueryDeadline.remaining().map(remaining -> !remaining.isNegative() && !remaining.isZero()).orElse(true);  // 마감 시각이 없는 스레드는 다시 한다.
+    }
+
+    /**
+     * @param leader 이 호출이 직접 실행했으면 true, 다른 호출의 결과를 받았으면 false
+     */
+    public record Result<V>(V value, boolean leader) {
+    }
+}
@@ -0,0 +1,109 @@
+package study.querydsl.repository.support;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.QueryResults;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import study.querydsl.monitoring.jfr.RepositoryEvents;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * fetch(), fetchOne() 한 번을 "querydsl.query" observation으로 감싼다.
+ * micrometer-tracing이 이를 span으로 바꿔주고, 요청 처리 중이면 컨트롤러 요청 span의 자식이 된다.
+ * JPQL, 조회된 행 수, 페이지의 content/count 중 어느 쿼리인지를 태그로 남기고,
+ * 실제로 실행된 SQL은 p6spy 리스너(QuerySpanSqlListener)가 같은 span에 붙인다.
+ *
+ * 실행 전에 비상관 스칼라 서브쿼리는 ScalarSubqueries가 미리 계산한 값으로 바꾼 복사본을 실행한다.
+ * fetch(), fetchOne() 말고 fetchResults(), fetchCount(), stream(), iterate()도 같은 복사본을 실행한다. (span은 남기지 않는다)
+ *
+ * JPAQuery.select()는 this를 캐스팅해서 돌려주므로 select/from/where를 이어 붙여도 이 클래스가 유지된다.
+ */
+public class TracedJPAQuery<T> extends JPAQuery<T> {
+
+    public static final String OBSERVATION_NAME = "querydsl.query";
+
+    private final ObservationRegistry observationRegistry;
+    private final ScalarSubqueries scalarSubqueries;
+
+    public TracedJPAQuery(EntityManager entityManager, ObservationRegistry observationRegistry,
+                          ScalarSubqueries scalarSubqueries) {
+        super(entityManager);
+        this.observationRegistry = observationRegistry;
+        this.scalarSubqueries = scalarSubqueries;
+    }
+
+    public TracedJPAQuery(EntityManager entityManager, JPQLTemplates templates, ObservationRegistry observationRegistry,
+                          ScalarSubqueries scalarSubqueries) {
+        super(entityManager, templates);
+        this.observationRegistry = observationRegistry;
+        this.scalarSubqueries = scalarSubqueries;
+    }
+
+    @Override
+    public List<T> fetch() {
+        Observation observation = start();
+        return observation.observe(() -> {
+            JPAQuery<T> rewritten = rewrite();  // 서브쿼리 계산 시간도 span에 포함
+            List<T> result = rewritten == null ? super.fetch() : rewritten.fetch();
+            observation.highCardinalityKeyValue("db.rows", String.valueOf(result.size()));
+            return result;
+        });
+    }
+
+    @Override
+    public T fetchOne() {
+        Observation observation = start();
+        return observation.observe(() -> {
+            JPAQuery<T> rewritten = rewrite();  // 서브쿼리 계산 시간도 span에 포함
+            T result = rewritten == null ? super.fetchOne() : rewritten.fetchOne();
+            observation.highCardinalityKeyValue("db.rows", result == null ? "0" : "1");
+            return result;
+        });
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public QueryResults<T> fetchResults() {
+        JPAQuery<T> rewritten = rewrite();
+        return rewritten == null ? super.fetchResults() : rewritten.fetchResults();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public long fetchCount() {
+        JPAQuery<T> rewritten = rewrite();
+        return rewritten == null ? super.fetchCount() : rewritten.fetchCount();
+    }
+
+    @Override
+    public Stream<T> stream() {
+        JPAQuery<T> rewritten = rewrite();
+        return rewritten == null ? super.stream() : rewritten.stream();
+    }
+
+    @Override
+    public CloseableIterator<T> iterate() {
+        JPAQuery<T> rewritten = rewrite();
+        return rewritten == null ? super.iterate() : rewritten.iterate();
+    }
+
+    // 바뀐 복사본은 JPAQuery라서 다시 이 클래스를 거치지 않는다.
+    private JPAQuery<T> rewrite() {
+        return scalarSubqueries.rewrite(this, entityManager, getTemplates());
+    }
+
+    private Observation start() {
+        Observation observation = Observation.createNotStarted(OBSERVATION_NAME, observationRegistry)
+                .contextualName("querydsl " + RepositoryEvents.currentPhase())
+                .lowCardinalityKeyValue("querydsl.phase", RepositoryEvents.currentPhase());
+        if (!observation.isNoop()) {  // JPQL 렌더링은 쿼리마다 드는 비용이므로 관측이 꺼져 있으면 하지 않는다.
+            observation.highCardinalityKeyValue("db.jpql", toString());  // JPAQuery.toString()은 렌더링된 JPQL
+        }
+        return observation;
+    }
+}
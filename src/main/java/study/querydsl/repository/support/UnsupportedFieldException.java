@@ -0,0 +1,17 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+/**
+ * fields= 파라미터에 없는 컬럼 이름이 들어왔을 때 던진다. 컨트롤러에서 400 Bad Request로 바꾼다.
+ */
+@Getter
+public class UnsupportedFieldException extends RuntimeException {
+
+    private final String field;
+
+    public UnsupportedFieldException(String field) {
+        super("Field '" + field + "' is not supported");
+        this.field = field;
+    }
+}
@@ -0,0 +1,17 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+/**
+ * 인덱스로 정렬할 수 없는 속성으로 정렬을 요청했을 때 던진다. 컨트롤러에서 400 Bad Request로 바꾼다.
+ */
+@Getter
+public class UnsupportedSortException extends RuntimeException {
+
+    private final String property;
+
+    public UnsupportedSortException(String property) {
+        super("Sorting by '" + property + "' is not supported");
+        this.property = property;
+    }
+}
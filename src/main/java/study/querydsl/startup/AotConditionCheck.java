@@ -0,0 +1,47 @@
+package study.querydsl.startup;
+
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import study.querydsl.datasource.AdaptivePoolSizer;
+import study.querydsl.repository.MemberArchiver;
+import study.querydsl.repository.MemberWriteBehind;
+import study.querydsl.repository.shard.ShardedMemberRepository;
+import study.querydsl.repository.sql.MemberSqlRepository;
+
+/**
+ * -Paot 빌드로 실행할 때, 조건부 빈(@ConditionalOnProperty)의 실행 시점 설정이 빌드 시점 설정과 같은지 확인한다.
+ * processAot는 빌드할 때의 설정으로 조건을 평가해서 빈 정의를 고정하므로, 실행할 때 설정을 바꿔도 빈이 생기거나 빠지지 않는다.
+ * 예를 들어 member.sharding.enabled=true로 실행해도 샤딩 없이 빌드했다면 기본 DB만 조회하게 된다. 조용히 다르게 동작하지 않도록 시작할 때 실패한다.
+ * AOT 산출물을 쓰지 않는 실행(spring.aot.enabled가 아님)에서는 아무것도 하지 않는다.
+ */
+@Component
+public class AotConditionCheck {
+
+    public AotConditionCheck(Environment environment, ListableBeanFactory beanFactory) {
+        if (!AotDetector.useGeneratedArtifacts()) {
+            return;
+        }
+        check(environment, "member.sharding.enabled", "true", hasBean(beanFactory, ShardedMemberRepository.class));
+        check(environment, "member.search.engine", "sql", hasBean(beanFactory, MemberSqlRepository.class));
+        check(environment, "member.write-behind.enabled", "true", hasBean(beanFactory, MemberWriteBehind.class));
+        check(environment, "member.archive.enabled", "true", hasBean(beanFactory, MemberArchiver.class));
+        check(environment, "member.pool.adaptive.enabled", "true", hasBean(beanFactory, AdaptivePoolSizer.class));
+        check(environment, "member.tracing.logging-exporter", "true", beanFactory.containsBeanDefinition("loggingSpanExporter"));
+    }
+
+    // 빈을 만들지 않고 정의만 본다. (lazy 초기화 중에도 빈을 만들지 않는다)
+    private static boolean hasBean(ListableBeanFactory beanFactory, Class<?> type) {
+        return beanFactory.getBeanNamesForType(type, true, false).length > 0;
+    }
+
+    private static void check(Environment environment, String property, String havingValue, boolean built) {
+        boolean configured = havingValue.equalsIgnoreCase(environment.getProperty(property, ""));
+        if (configured != built) {
+            throw new IllegalStateException(property + "=" + environment.getProperty(property)
+                    + " does not match the AOT build, which was processed with it " + (built ? "on" : "off")
+                    + ". Rebuild with -Paot -PaotArgs=--" + property + "=<value>");
+        }
+    }
+}
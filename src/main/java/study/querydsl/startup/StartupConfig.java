@@ -0,0 +1,43 @@
+package study.querydsl.startup;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import study.querydsl.controller.InitMember;
+
+import java.util.Arrays;
+
+/**
+ * spring.main.lazy-initialization=true (startup 프로파일)일 때 미리 만들어야 하는 빈을 지정한다.
+ * 나머지 빈(리포지토리, 모니터링 등)은 처음 쓰일 때 만들어져서 시작 시간이 줄어든다.
+ *
+ * - 웹 계층(컨트롤러, 인터셉터, MVC 설정): 첫 요청 응답 시간이 늘어나지 않도록 미리 만든다.
+ * - InitMember: @PostConstruct로 데이터를 넣으므로 지연되면 아예 실행되지 않는다.
+ * - @Scheduled 메서드가 있는 빈: 만들어지지 않으면 스케줄에 등록되지 않는다.
+ * - AotConditionCheck: 시작할 때 설정을 확인해야 하므로 지연되면 안 된다.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerWebAndScheduledBeans() {
+        return (beanName, beanDefinition, beanType) ->
+                AnnotatedElementUtils.hasAnnotation(beanType, Controller.class)
+                        || WebMvcConfigurer.class.isAssignableFrom(beanType)
+                        || HandlerInterceptor.class.isAssignableFrom(beanType)
+                        || InitMember.class.isAssignableFrom(beanType)
+                        || AotConditionCheck.class.isAssignableFrom(beanType)
+                        || hasScheduledMethod(beanType);
+    }
+
+    private static boolean hasScheduledMethod(Class<?> beanType) {
+        return Arrays.stream(ReflectionUtils.getUniqueDeclaredMethods(beanType))
+                .anyMatch(method -> AnnotatedElementUtils.hasAnnotation(method, Scheduled.class));
+    }
+}
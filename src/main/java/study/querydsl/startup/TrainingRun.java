@@ -0,0 +1,49 @@
+package study.querydsl.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * CDS 아카이브를 만들기 위한 학습 실행(training run).
+ * 애플리케이션이 다 뜨면 첫 요청 경로(/v2/members)를 한 번 호출해서 관련 클래스를 로딩시키고 바로 종료한다.
+ * -XX:ArchiveClassesAtExit 옵션으로 실행하면 JVM이 종료되면서 로딩된 클래스를 아카이브로 저장한다. (./gradlew cdsArchive)
+ *
+ * member.startup.training-run은 조건부 빈(@ConditionalOnProperty)이 아니라 실행 시점에 확인한다.
+ * -Paot 빌드에서는 processAot가 빌드 시점 설정으로 조건을 평가해서 빈 정의를 고정하기 때문에, 조건부로 두면 학습 실행 빈이 빠진다.
+ */
+@Slf4j
+@Component
+public class TrainingRun {
+
+    private final boolean enabled;
+
+    public TrainingRun(@Value("${member.startup.training-run:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        String port = event.getApplicationContext().getEnvironment().getProperty("local.server.port", "8080");
+        try {
+            HttpResponse<Void> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/v2/members?size=20")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            log.info("Training request finished with status {}", response.statusCode());
+        } catch (Exception e) {
+            log.warn("Training request failed", e);
+        }
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
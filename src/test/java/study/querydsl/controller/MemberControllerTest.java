@@ -0,0 +1,143 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManager em;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void ifNoneMatchReturnsNotModified() throws Exception {
+        // given
+        String etag = mockMvc.perform(get("/v1/members").param("teamName", "teamA"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when, then 데이터가 바뀌지 않았으면 쿼리 없이 304
+        mockMvc.perform(get("/v1/members").param("teamName", "teamA").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/v1/members").param("teamName", "teamB").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());  // 조건이 다르면 ETag도 다르다.
+    }
+
+    @Test
+    void dataVersionChangeInvalidatesEtag() throws Exception {
+        // given
+        String etag = mockMvc.perform(get("/v1/members"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when 회원이 바뀌면 엔티티 리스너가 데이터 버전을 올린다.
+        em.persist(new Member("member3", 30));
+        em.flush();
+
+        // then
+        String changed = mockMvc.perform(get("/v1/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(changed).isNotEqualTo(etag);
+    }
+
+    @Test
+    void v2EtagDependsOnAccept() throws Exception {
+        // given
+        String json = mockMvc.perform(get("/v2/members").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when 같은 URL이라도 응답 형식이 다르면 다른 표현이다.
+        String compact = mockMvc.perform(get("/v2/members").accept(MemberPageWriter.COMPACT_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // then
+        assertThat(compact).isNotEqualTo(json);
+        mockMvc.perform(get("/v2/members").accept(MemberPageWriter.COMPACT_JSON).header(HttpHeaders.IF_NONE_MATCH, json))
+                .andExpect(status().isOk());  // JSON 응답의 ETag로는 compact 응답을 304로 받을 수 없다.
+        mockMvc.perform(get("/v2/members").accept(MemberPageWriter.COMPACT_JSON).header(HttpHeaders.IF_NONE_MATCH, compact))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void v2CompactJson() throws Exception {
+        mockMvc.perform(get("/v2/members").param("sort", "username").accept(MemberPageWriter.COMPACT_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MemberPageWriter.COMPACT_JSON))
+                .andExpect(jsonPath("$.totalElements").value(2))
+                .andExpect(jsonPath("$.content[0].username").value("member1"))
+                .andExpect(jsonPath("$.content[1].teamName").value("teamA"))
+                .andExpect(jsonPath("$.pageable").doesNotExist());  // PageImpl의 pageable, sort는 빠진다.
+    }
+
+    @Test
+    void v2ColumnarJson() throws Exception {
+        mockMvc.perform(get("/v2/members").param("sort", "username").accept(MemberPageWriter.COLUMNAR_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MemberPageWriter.COLUMNAR_JSON))
+                .andExpect(jsonPath("$.totalElements").value(2))
+                .andExpect(jsonPath("$.content.username[0]").value("member1"))
+                .andExpect(jsonPath("$.content.username[1]").value("member2"))
+                .andExpect(jsonPath("$.content.age[1]").value(20));
+    }
+
+    @Test
+    void v2Cbor() throws Exception {
+        // when
+        byte[] body = mockMvc.perform(get("/v2/members").param("sort", "username").accept(MemberPageWriter.CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MemberPageWriter.CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // then
+        JsonNode page = new ObjectMapper(new CBORFactory()).readTree(body);
+        assertThat(page.get("totalElements").asLong()).isEqualTo(2);
+        assertThat(page.get("content").get("username").get(0).asText()).isEqualTo("member1");
+        assertThat(page.get("content").get("teamName").get(1).asText()).isEqualTo("teamA");
+    }
+
+    @Test
+    void v2InvalidAcceptIsBadRequest() throws Exception {
+        mockMvc.perform(get("/v2/members").header(HttpHeaders.ACCEPT, "application/"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,62 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryDeadlineInterceptorTest {
+
+    QueryDeadlineInterceptor interceptor = new QueryDeadlineInterceptor(Duration.ofSeconds(2), Duration.ofSeconds(10));
+
+    @AfterEach
+    void after() {
+        QueryDeadline.clear();
+    }
+
+    @Test
+    void headerSetsDeadline() throws Exception {
+        // when
+        Duration remaining = budgetFor("500");
+
+        // then
+        assertThat(remaining).isPositive().isLessThanOrEqualTo(Duration.ofMillis(500));
+    }
+
+    @Test
+    void defaultAndMaxBudget() throws Exception {
+        // then 헤더가 없거나 잘못되면 기본 예산, 너무 길면 상한
+        assertThat(budgetFor(null)).isGreaterThan(Duration.ofMillis(1500)).isLessThanOrEqualTo(Duration.ofSeconds(2));
+        assertThat(budgetFor("abc")).isGreaterThan(Duration.ofMillis(1500)).isLessThanOrEqualTo(Duration.ofSeconds(2));
+        assertThat(budgetFor("-1")).isGreaterThan(Duration.ofMillis(1500)).isLessThanOrEqualTo(Duration.ofSeconds(2));
+        assertThat(budgetFor("600000")).isGreaterThan(Duration.ofSeconds(9)).isLessThanOrEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void deadlineIsClearedAfterCompletion() throws Exception {
+        // given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, new Object());
+
+        // when 톰캣 스레드는 재사용된다.
+        interceptor.afterCompletion(request, response, new Object(), null);
+
+        // then
+        assertThat(QueryDeadline.remaining()).isEmpty();
+    }
+
+    private Duration budgetFor(String header) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (header != null) {
+            request.addHeader(QueryDeadlineInterceptor.TIMEOUT_HEADER, header);
+        }
+        interceptor.preHandle(request, new MockHttpServletResponse(), new Object());
+        return QueryDeadline.remaining().orElseThrow();
+    }
+}
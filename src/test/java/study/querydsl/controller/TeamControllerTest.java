@@ -0,0 +1,37 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.web.servlet.MockMvc;
+import study.querydsl.repository.TeamQueryRepository;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class TeamControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    TeamQueryRepository teamQueryRepository;
+
+    @Test
+    void deadlineExceededIsGatewayTimeout() throws Exception {
+        // given 요청 마감 시각이 지나 쿼리가 취소됐다.
+        when(teamQueryRepository.findTeamsWithMembers(any(), any()))
+                .thenThrow(new QueryTimeoutException("Request deadline exceeded before query execution"));
+
+        // when, then 회원 API와 같은 504
+        mockMvc.perform(get("/v1/teams").header(QueryDeadlineInterceptor.TIMEOUT_HEADER, "100"))
+                .andExpect(status().isGatewayTimeout());
+    }
+}
@@ -0,0 +1,136 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 고정 크기 풀과 AdaptivePoolSizer를 켠 풀의 처리량을 비교한다.
+ * 시간이 오래 걸리므로 기본 test 태스크에서는 빠지고 ./gradlew loadTest 로 실행한다.
+ *
+ * 먼저 돌린 쪽이 JIT, 커넥션, DB 캐시 예열 비용을 떠안지 않도록 예열 실행을 버리고 고정/조절 순서를 번갈아(ABBA) 실행한다.
+ * 처리량은 장비와 부하에 따라 흔들리므로 로그로만 남기고, 검증은 대기가 생기면 풀이 커지는지만 한다.
+ */
+@Tag("load")
+@SpringBootTest(properties = {
+        "member.pool.adaptive.enabled=true",
+        "member.pool.adaptive.interval=1h",  // 스케줄러 대신 테스트에서 직접 adjust()를 호출한다.
+        "logging.level.org.hibernate.SQL=info"
+})
+class AdaptivePoolSizerLoadTest {
+
+    private static final int START_POOL_SIZE = 2;
+    private static final int CLIENTS = 32;
+    private static final long DURATION_MILLIS = 5_000;
+    private static final long WARMUP_MILLIS = 3_000;
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptivePoolSizerLoadTest.class);
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    AdaptivePoolSizer adaptivePoolSizer;
+
+    @BeforeEach
+    void before() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 1000; i++) {
+                em.persist(new Member("member" + i, i % 100, i % 2 == 0 ? teamA : teamB));
+            }
+        });
+    }
+
+    @AfterEach
+    void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    void adaptivePoolComparedWithFixedPool() throws Exception {
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+        runLoad(hikari, null, WARMUP_MILLIS);  // 예열. 결과는 버린다.
+
+        // 고정 크기 풀과 같은 크기에서 시작해서 조절기가 500ms마다 크기를 바꾸는 풀을 번갈아 실행한다.
+        long fixed = runLoad(hikari, null, DURATION_MILLIS);
+        long adaptive = runLoad(hikari, adaptivePoolSizer, DURATION_MILLIS);
+        int grownSize = hikari.getHikariConfigMXBean().getMaximumPoolSize();
+        adaptive += runLoad(hikari, adaptivePoolSizer, DURATION_MILLIS);
+        fixed += runLoad(hikari, null, DURATION_MILLIS);
+
+        log.info("fixed pool({}): {} searches, adaptive pool({} -> {}): {} searches",
+                START_POOL_SIZE, fixed, START_POOL_SIZE, grownSize, adaptive);
+        assertThat(grownSize).isGreaterThan(START_POOL_SIZE);  // 대기가 생기니 풀을 늘려야 한다.
+    }
+
+    private long runLoad(HikariDataSource hikari, AdaptivePoolSizer sizer, long durationMillis) throws Exception {
+        hikari.getHikariConfigMXBean().setMaximumPoolSize(START_POOL_SIZE);  // 매번 같은 크기에서 시작한다.
+        AtomicLong completed = new AtomicLong();
+        long end = System.currentTimeMillis() + durationMillis;
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            int client = i;
+            futures.add(clients.submit(() -> {
+                MemberSearchCondition condition = new MemberSearchCondition();
+                condition.setAgeGoe(client % 50);
+                while (System.currentTimeMillis() < end) {
+                    memberRepository.searchPage(condition, PageRequest.of(client % 10, 20));
+                    completed.incrementAndGet();
+                }
+            }));
+        }
+        while (System.currentTimeMillis() < end) {
+            Thread.sleep(500);
+            if (sizer != null) {
+                sizer.adjust();
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        clients.shutdown();
+        clients.awaitTermination(10, TimeUnit.SECONDS);
+        return completed.get();
+    }
+}
@@ -0,0 +1,82 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.repository.support.TracedJPAQuery;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdaptivePoolSizerTest {
+
+    private static final int MIN_SIZE = 5;
+
+    MeterRegistry meterRegistry;
+    Timer queryTimer;
+    Timer acquireTimer;
+    AtomicInteger poolSize;
+    AdaptivePoolSizer sizer;
+
+    @BeforeEach
+    void before() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        queryTimer = Timer.builder(TracedJPAQuery.OBSERVATION_NAME).register(meterRegistry);
+        acquireTimer = Timer.builder("hikaricp.connections.acquire").register(meterRegistry);
+
+        // 최대 크기는 실제로 바뀌고, 사용 중인 커넥션은 항상 꽉 차 있으며 커넥션을 기다리는 스레드가 2개 있다.
+        poolSize = new AtomicInteger(20);
+        HikariConfigMXBean config = mock(HikariConfigMXBean.class);
+        when(config.getMaximumPoolSize()).thenAnswer(invocation -> poolSize.get());
+        doAnswer(invocation -> {
+            poolSize.set(invocation.getArgument(0));
+            return null;
+        }).when(config).setMaximumPoolSize(anyInt());
+        HikariPoolMXBean pool = mock(HikariPoolMXBean.class);
+        when(pool.getActiveConnections()).thenAnswer(invocation -> poolSize.get());
+        when(pool.getThreadsAwaitingConnection()).thenReturn(2);
+        HikariDataSource hikari = mock(HikariDataSource.class);
+        when(hikari.unwrap(HikariDataSource.class)).thenReturn(hikari);
+        when(hikari.getHikariConfigMXBean()).thenReturn(config);
+        when(hikari.getHikariPoolMXBean()).thenReturn(pool);
+
+        sizer = new AdaptivePoolSizer(hikari, meterRegistry, MIN_SIZE, 30, 5);
+    }
+
+    @Test
+    void baselineFollowsPermanentLatencyShift() throws Exception {
+        // given 평소 쿼리 지연 10ms로 기준선을 잡는다.
+        for (int i = 0; i < 5; i++) {
+            interval(Duration.ofMillis(10));
+        }
+        int beforeShift = poolSize.get();
+
+        // when 쿼리 지연이 30ms로 바뀐 채 계속된다.
+        int smallest = beforeShift;
+        for (int i = 0; i < 10; i++) {
+            interval(Duration.ofMillis(30));
+            smallest = Math.min(smallest, poolSize.get());
+        }
+
+        // then 처음 몇 구간은 포화로 보고 줄이지만, 기준선이 새 지연을 따라간 뒤에는 대기 스레드를 보고 다시 늘린다.
+        assertThat(smallest).isLessThan(beforeShift).isGreaterThan(MIN_SIZE);
+        assertThat(poolSize.get()).isGreaterThan(smallest);
+    }
+
+    private void interval(Duration queryLatency) {
+        queryTimer.record(queryLatency);
+        acquireTimer.record(Duration.ofMillis(1));
+        sizer.adjust();
+    }
+}
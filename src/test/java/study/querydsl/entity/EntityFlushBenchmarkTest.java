@@ -0,0 +1,86 @@
+package study.querydsl.entity;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.ManagedEntity;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 관리 중인 엔티티 10만 개를 flush 할 때의 CPU 시간과 할당 메모리를 잰다.
+ * ./gradlew loadTest 와 ./gradlew loadTest -PnoEnhance 결과를 비교하면 바이트코드 향상 효과를 볼 수 있다.
+ */
+@Tag("load")
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.jdbc.batch_size=1000",
+        "logging.level.org.hibernate.SQL=info"
+})
+class EntityFlushBenchmarkTest {
+
+    private static final int ENTITIES = 100_000;
+    private static final int MODIFIED = 1_000;  // 1%만 바꾼다. 나머지는 바뀌지 않았는데도 검사 대상이다.
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    void flushManagedEntities() throws Exception {
+        boolean enhanced = ManagedEntity.class.isAssignableFrom(Member.class);
+        System.out.println("enhanced = " + enhanced + ", dirtyTracking = " + SelfDirtinessTracker.class.isAssignableFrom(Member.class));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = new Team("teamA");
+            em.persist(team);
+            for (int i = 0; i < ENTITIES; i++) {
+                em.persist(new Member("member" + i, i % 100));
+                if (i % 1000 == 999) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+        });
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] result = transactionTemplate.execute(status -> {
+            List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();  // 10만 개 관리 상태
+            for (int i = 0; i < MODIFIED; i++) {
+                members.get(i * (ENTITIES / MODIFIED)).setAge(200);
+            }
+
+            long cpu = threads.getCurrentThreadCpuTime();
+            long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            em.flush();
+            return new long[]{
+                    threads.getCurrentThreadCpuTime() - cpu,
+                    threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated
+            };
+        });
+
+        System.out.printf("flush of %d managed entities (%d dirty): cpu=%dms, allocated=%dKB%n",
+                ENTITIES, MODIFIED, TimeUnit.NANOSECONDS.toMillis(result[0]), result[1] / 1024);
+
+        Long updated = em.createQuery("select count(m) from Member m where m.age = 200", Long.class).getSingleResult();
+        assertThat(updated).isEqualTo(MODIFIED);  // 향상 여부와 관계없이 바뀐 엔티티는 모두 update 되어야 한다.
+    }
+}
@@ -1,6 +1,7 @@
 package study.querydsl.entity;
 
 import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -50,4 +51,58 @@ class MemberTest {
         // then
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void changeTeam() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member = new Member("member1", 10, teamA);
+        em.persist(member);
+        em.flush();
+        em.clear();
+
+        // when
+        Member findMember = em.find(Member.class, member.getId());
+        Team findTeamB = em.find(Team.class, teamB.getId());
+        findMember.changeTeam(findTeamB);  // 바이트코드 향상(dirty tracking) 후에도 lombok setter/필드 변경이 감지되어야 한다.
+        findMember.setAge(20);
+        em.flush();
+        em.clear();
+
+        // then
+        Member result = em.find(Member.class, member.getId());
+        assertEquals("teamB", result.getTeam().getName());
+        assertEquals(20, result.getAge());
+    }
+
+    @Test
+    void changeTeamWithoutLoadingMembers() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member = new Member("member1", 10, teamA);
+        em.persist(member);
+        em.persist(new Member("member2", 20, teamB));
+        em.flush();
+        em.clear();
+
+        // when
+        Member findMember = em.find(Member.class, member.getId());
+        Team findTeamA = em.find(Team.class, teamA.getId());
+        Team findTeamB = em.find(Team.class, teamB.getId());
+        findTeamA.getMembers().size();  // 이전 팀 목록만 로딩해둔다.
+        findMember.changeTeam(findTeamB);
+
+        // then
+        assertTrue(findTeamA.getMembers().isEmpty());  // 로딩된 목록에서는 빠진다.
+        assertFalse(Hibernate.isInitialized(findTeamB.getMembers()));  // 로딩되지 않은 목록은 건드리지 않는다.
+        em.flush();
+        em.clear();
+        assertEquals(2, em.find(Team.class, teamB.getId()).getMembers().size());
+    }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.monitoring;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "member.slow-query.threshold=0ms")  // 모든 쿼리를 느린 쿼리로 기록한다.
+@Transactional
+class SlowQueryRecorderTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    SlowQueryRecorder slowQueryRecorder;
+
+    @Test
+    void recordsSlowQueryWithOriginAndPlan() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.flush();
+
+        // when
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        memberRepository.search(condition);
+
+        // then
+        SlowQuery slowQuery = awaitPlan("'***'");
+        assertThat(slowQuery.getSqlWithValues()).containsIgnoringCase("select");
+        assertThat(slowQuery.getSqlWithValues()).doesNotContain("teamA");  // 문자열 값은 가린다.
+        assertThat(slowQuery.getPlan()).doesNotContain("teamA");
+        assertThat(slowQuery.getOrigin()).isNotEqualTo("unknown");
+        assertThat(slowQuery.getPlan()).isNotBlank().doesNotStartWith("EXPLAIN failed");
+    }
+
+    // EXPLAIN은 별도 스레드에서 채워지므로 잠시 기다린다.
+    private SlowQuery awaitPlan(String sqlFragment) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            Optional<SlowQuery> found = slowQueryRecorder.getSlowQueries().stream()
+                    .filter(q -> q.getSqlWithValues().contains(sqlFragment) && q.getPlan() != null)
+                    .findFirst();
+            if (found.isPresent()) {
+                return found.get();
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("No slow query with a plan recorded for " + sqlFragment);
+    }
+}
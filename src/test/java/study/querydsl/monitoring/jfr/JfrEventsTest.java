@@ -0,0 +1,124 @@
+package study.querydsl.monitoring.jfr;
+
+import jakarta.persistence.EntityManager;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@Transactional
+class JfrEventsTest {
+
+    private static final String REPOSITORY_CALL = "study.querydsl.RepositoryCall";
+    private static final String PAGINATION_PHASE = "study.querydsl.PaginationPhase";
+    private static final String PERSISTENCE_CONTEXT = "study.querydsl.PersistenceContext";
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @TempDir
+    Path tempDir;
+
+    Team teamA;
+
+    @BeforeEach
+    void before() {
+        teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void searchPageRecordsCallAndPhases() throws Exception {
+        // given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        // when 페이지 크기가 1이라 content 다음에 count 쿼리도 실행된다.
+        List<RecordedEvent> events = record(() -> {
+            Page<MemberTeamDto> page = memberRepository.searchPage(condition, PageRequest.of(0, 1));
+            assertThat(page.getTotalElements()).isEqualTo(2);
+        });
+
+        // then
+        RecordedEvent call = events.stream()
+                .filter(e -> e.getEventType().getName().equals(REPOSITORY_CALL))
+                .filter(e -> "searchPage".equals(e.getString("method")))
+                .findFirst()
+                .orElseThrow();
+        assertThat(call.getString("repository")).isEqualTo("MemberRepositoryImpl");
+        assertThat(call.getString("conditionShape")).isEqualTo("teamName");  // 값(teamA)은 남기지 않는다.
+        assertThat(call.getInt("rowCount")).isEqualTo(1);
+        assertThat(call.getDuration("contentQueryDuration")).isPositive();
+        assertThat(call.getDuration("countQueryDuration")).isPositive();
+
+        assertThat(events)
+                .filteredOn(e -> e.getEventType().getName().equals(PAGINATION_PHASE))
+                .extracting(e -> e.getString("phase"), e -> e.getLong("rows"))
+                .containsExactlyInAnyOrder(tuple("content", 1L), tuple("count", 2L));
+    }
+
+    @Test
+    void flushAndClearAreRecorded() throws Exception {
+        // when
+        List<RecordedEvent> events = record(() -> {
+            em.persist(new Member("member3", 30, em.getReference(Team.class, teamA.getId())));
+            em.flush();
+            em.clear();
+        });
+
+        // then
+        List<RecordedEvent> persistenceContext = events.stream()
+                .filter(e -> e.getEventType().getName().equals(PERSISTENCE_CONTEXT))
+                .toList();
+        assertThat(persistenceContext)
+                .extracting(e -> e.getString("operation"))
+                .contains("flush", "clear");
+        assertThat(persistenceContext)
+                .filteredOn(e -> e.getString("operation").equals("flush"))
+                .allSatisfy(e -> assertThat(e.getInt("entities")).isPositive());
+    }
+
+    // 이 테스트 스레드에서 발생한 이벤트만 돌려준다. 스케줄러 등 다른 스레드의 이벤트는 뺀다.
+    private List<RecordedEvent> record(Runnable work) throws Exception {
+        Path file = tempDir.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(REPOSITORY_CALL).withoutThreshold();
+            recording.enable(PAGINATION_PHASE).withoutThreshold();
+            recording.enable(PERSISTENCE_CONTEXT).withoutThreshold();
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        long threadId = Thread.currentThread().getId();
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getThread() != null && e.getThread().getJavaThreadId() == threadId)
+                .toList();
+    }
+}
@@ -0,0 +1,128 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberBatchQuery;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.PageTooDeepException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "member.archive.enabled=true",
+        "member.archive.chunk-size=2"  // 구간 여러 개로 나뉘도록
+})
+@Transactional
+class MemberArchiverTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberArchiver memberArchiver;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        LocalDateTime longAgo = LocalDateTime.now().minusYears(2);
+        for (int i = 1; i <= 6; i++) {
+            Member member = new Member("member" + i, i * 10, i % 2 == 0 ? teamB : teamA);
+            if (i % 3 != 0) {
+                member.setLastActiveAt(longAgo);  // member1, 2, 4, 5는 비활동
+            }
+            em.persist(member);
+        }
+    }
+
+    @Test
+    void archive() throws Exception {
+        // when
+        long archived = memberArchiver.archive();
+
+        // then
+        assertThat(archived).isEqualTo(4);
+        Long active = em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+        Long stored = em.createQuery("select count(a) from MemberArchive a", Long.class).getSingleResult();
+        assertThat(active).isEqualTo(2);
+        assertThat(stored).isEqualTo(4);
+        assertThat(memberArchiver.archive()).isZero();  // 다시 실행해도 옮길 회원이 없다.
+    }
+
+    @Test
+    void searchIncludeArchived() throws Exception {
+        // given
+        memberArchiver.archive();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        // when
+        List<MemberTeamDto> active = memberRepository.search(condition);
+        condition.setIncludeArchived(true);
+        List<MemberTeamDto> all = memberRepository.search(condition);
+        Page<MemberTeamDto> page = memberRepository.searchPage(condition, PageRequest.of(0, 2, Sort.by("age").descending()));
+
+        // then
+        assertThat(active).extracting("username").containsExactly("member6");
+        assertThat(all).extracting("username").containsExactlyInAnyOrder("member2", "member4", "member6");
+        assertThat(all).extracting("teamName").containsOnly("teamB");  // 보관 회원도 팀 이름이 채워진다.
+        assertThat(page.getContent()).extracting("age").containsExactly(60, 40);  // 활동 회원과 보관 회원이 정렬 순서대로 섞인다.
+        assertThat(page.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    void deepPageIncludeArchivedIsRejected() throws Exception {
+        // given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setIncludeArchived(true);
+
+        // when then 두 테이블에서 offset + size 건을 모두 읽어야 하므로 한도를 넘는 페이지는 읽지 않는다.
+        assertThatThrownBy(() -> memberRepository.searchPage(condition, PageRequest.of(100_000, 20)))
+                .isInstanceOf(PageTooDeepException.class);
+    }
+
+    @Test
+    void searchFieldsAndBatchIncludeArchived() throws Exception {
+        // given
+        memberArchiver.archive();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        condition.setIncludeArchived(true);
+        MemberBatchQuery all = new MemberBatchQuery();
+        all.setCondition(condition);
+        MemberBatchQuery limited = new MemberBatchQuery();
+        limited.setCondition(condition);
+        limited.setLimit(2);
+
+        // when
+        List<Map<String, Object>> fields = memberRepository.searchFields(condition, Set.of(MemberField.USERNAME));
+        List<List<MemberTeamDto>> batch = memberRepository.searchBatch(List.of(all, limited));
+
+        // then
+        assertThat(fields).extracting(values -> values.get("username"))
+                .containsExactlyInAnyOrder("member2", "member4", "member6");
+        assertThat(batch.get(0)).extracting("username").containsExactly("member6", "member2", "member4");  // 활동 회원 뒤에 보관 회원
+        assertThat(batch.get(1)).extracting("username").containsExactly("member6", "member2");
+    }
+}
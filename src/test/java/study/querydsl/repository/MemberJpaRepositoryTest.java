@@ -1,6 +1,7 @@
 package study.querydsl.repository;
 
 import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -70,4 +71,20 @@ class MemberJpaRepositoryTest {
         // then
         assertThat(result).extracting("username").containsExactly("member4");
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllReadOnly() throws Exception {
+        // given
+        memberJpaRepository.save(new Member("member1", 10));
+        em.flush();
+        em.clear();
+
+        // when
+        List<Member> result = memberJpaRepository.findAll_Querydsl();
+
+        // then
+        Session session = em.unwrap(Session.class);
+        assertThat(result).hasSize(1);
+        assertThat(session.isReadOnly(result.get(0))).isTrue();  // 스냅샷을 만들지 않았다.
+    }
+}
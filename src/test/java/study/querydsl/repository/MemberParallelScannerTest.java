@@ -0,0 +1,106 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 스캐너는 자기 커넥션으로 읽기 때문에 테스트 데이터를 커밋하고 끝나면 지운다.
+ */
+@SpringBootTest(properties = {
+        "member.scan.parallelism=3",
+        "member.scan.batch-size=7"  // 구간 안에서 여러 번 나눠 읽도록 작게 잡는다.
+})
+class MemberParallelScannerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberParallelScanner scanner;
+
+    @BeforeEach
+    void before() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 100; i++) {
+                em.persist(new Member("member" + i, i, i % 2 == 0 ? teamA : teamB));
+            }
+        });
+    }
+
+    @AfterEach
+    void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    void forEach() throws Exception {
+        // given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        List<MemberTeamDto> result = new ArrayList<>();  // consumer는 한 번에 하나씩만 호출된다.
+
+        // when
+        scanner.forEach(condition, result::add);
+
+        // then
+        assertThat(result).hasSize(50);
+        assertThat(result).extracting("teamName").containsOnly("teamA");
+        assertThat(result).extracting("memberId").doesNotHaveDuplicates();
+    }
+
+    @Test
+    void collect() throws Exception {
+        // given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(90);
+
+        // when
+        Integer ageSum = scanner.collect(condition, Collectors.summingInt(MemberTeamDto::getAge));
+        Long count = scanner.collect(new MemberSearchCondition(), Collectors.counting());
+
+        // then
+        assertThat(ageSum).isEqualTo(90 + 91 + 92 + 93 + 94 + 95 + 96 + 97 + 98 + 99);
+        assertThat(count).isEqualTo(100);
+    }
+
+    @Test
+    void noMatch() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("nobody");
+
+        assertThat(scanner.collect(condition, Collectors.counting())).isZero();
+    }
+
+    @Test
+    void split() throws Exception {
+        assertThat(MemberParallelScanner.split(1, 10, 3)).extracting(r -> r[0] + "-" + r[1])
+                .containsExactly("1-4", "5-8", "9-10");
+        assertThat(MemberParallelScanner.split(5, 5, 8)).extracting(r -> r[0] + "-" + r[1])
+                .containsExactly("5-5");
+    }
+}
@@ -6,15 +6,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberBatchQuery;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.UnsupportedFieldException;
+import study.querydsl.repository.support.UnsupportedSortException;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @Transactional
@@ -73,6 +80,63 @@ class MemberRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member4");
     }
 
+    @Test
+    void searchFields() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(5);
+
+        // when
+        List<Map<String, Object>> result = memberRepository.searchFields(condition, MemberField.parse("username, age"));
+        List<Map<String, Object>> withTeam = memberRepository.searchFields(condition, MemberField.parse("teamName,username"));
+
+        // then
+        assertThat(result).containsExactlyInAnyOrder(
+                Map.of("username", "member1", "age", 10),
+                Map.of("username", "member2", "age", 20));
+        assertThat(withTeam.get(0).keySet()).containsExactly("username", "teamName");  // 선언 순서대로
+        assertThatThrownBy(() -> MemberField.parse("username,password"))
+                .isInstanceOf(UnsupportedFieldException.class);
+    }
+
+    @Test
+    void searchBatch() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberBatchQuery byTeam = new MemberBatchQuery();
+        byTeam.getCondition().setTeamName("teamB");
+        MemberBatchQuery byAge = new MemberBatchQuery();
+        byAge.getCondition().setAgeGoe(20);
+        byAge.setLimit(2);
+        MemberBatchQuery none = new MemberBatchQuery();
+        none.getCondition().setUsername("nobody");
+
+        // when
+        List<List<MemberTeamDto>> result = memberRepository.searchBatch(List.of(byTeam, byAge, none));
+        List<List<MemberTeamDto>> withAll = memberRepository.searchBatch(List.of(byTeam, new MemberBatchQuery()));
+
+        // then
+        assertThat(result).hasSize(3);
+        assertThat(result.get(0)).extracting("username").containsExactly("member3", "member4");
+        assertThat(result.get(1)).extracting("username").containsExactly("member2", "member3");  // member_id 순으로 limit 건
+        assertThat(result.get(2)).isEmpty();
+        assertThat(withAll.get(0)).extracting("username").containsExactly("member3", "member4");
+        assertThat(withAll.get(1)).hasSize(4);
+    }
+
     @Test
     void searchPageComplex() throws Exception {
         // given
@@ -100,4 +164,96 @@ class MemberRepositoryTest {
         assertThat(result.getSize()).isEqualTo(3);
         assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
     }
-}
\ No newline at end of file
+
+    @Test
+    void searchPageSorted() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 20, teamA));
+        em.persist(new Member("member2", 40, teamB));
+        em.persist(new Member("member3", 20, teamB));
+        em.persist(new Member("member4", 30, teamA));
+
+        // when
+        Page<MemberTeamDto> byAge = memberRepository.searchPage(new MemberSearchCondition(),
+                PageRequest.of(0, 3, Sort.by(Sort.Order.desc("age"))));
+        Page<MemberTeamDto> byTeam = memberRepository.searchPage(new MemberSearchCondition(),
+                PageRequest.of(0, 4, Sort.by("teamName", "username")));
+
+        // then
+        assertThat(byAge.getTotalElements()).isEqualTo(4);
+        assertThat(byAge.getContent()).extracting("username").containsExactly("member2", "member4", "member3");  // 같은 나이는 id 역순
+        assertThat(byTeam.getContent()).extracting("username").containsExactly("member1", "member4", "member2", "member3");
+        assertThat(MemberSort.isTopN(Sort.by("age"))).isTrue();
+        assertThat(MemberSort.isTopN(Sort.by("teamName", "username"))).isFalse();  // 조인한 팀 이름 순서는 전체 정렬로 읽는다.
+    }
+
+    @Test
+    void searchPageUnsupportedSort() throws Exception {
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by("team.members"));
+
+        assertThatThrownBy(() -> memberRepository.searchPage(new MemberSearchCondition(), pageRequest))
+                .isInstanceOf(UnsupportedSortException.class);
+    }
+
+    @Test
+    void moveMembers() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+
+        // when
+        long count = memberRepository.moveMembers(teamA.getId(), teamB.getId(), QMember.member.age.goe(20));
+
+        // then
+        assertThat(count).isEqualTo(2);
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member2", "member3");
+    }
+
+    @Test
+    void findAllByIds() throws Exception {
+        // given
+        Member member1 = new Member("member1", 10);
+        Member member2 = new Member("member2", 20);
+        Member member3 = new Member("member3", 30);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.flush();
+        em.clear();
+
+        Member cached = em.find(Member.class, member2.getId());  // 1차 캐시에 올려둔다.
+
+        // when
+        List<Member> result = memberRepository.findAllByIds(
+                List.of(member3.getId(), member2.getId(), -1L, member1.getId()));
+
+        // then
+        assertThat(result).extracting("username").containsExactly("member3", "member2", "member1");
+        assertThat(result.get(1)).isSameAs(cached);
+    }
+
+    @Test
+    void findAllByUsernames() throws Exception {
+        // given
+        em.persist(new Member("member1", 10));
+        em.persist(new Member("member2", 20));
+        em.persist(new Member("member3", 30));
+
+        // when
+        List<Member> result = memberRepository.findAllByUsernames(List.of("member3", "none", "member1"));
+
+        // then
+        assertThat(result).extracting("username").containsExactly("member3", "member1");
+    }
+}
@@ -0,0 +1,94 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MemberSearchCoalescerTest {
+
+    MemberRepository memberRepository = mock(MemberRepository.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    MemberSearchCoalescer coalescer = new MemberSearchCoalescer(memberRepository, meterRegistry);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void sameConditionSharesOneQuery() throws Exception {
+        // given 첫 검색이 실행 중인 동안
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<MemberTeamDto> members = List.of(new MemberTeamDto(1L, "member1", 10, null, null));
+        when(memberRepository.search(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return members;
+        });
+        CompletableFuture<List<MemberTeamDto>> first = CompletableFuture.supplyAsync(() -> coalescer.search(condition("member1")), executor);
+        started.await(5, TimeUnit.SECONDS);
+
+        // when 같은 조건(정규화 후)으로 들어온 검색
+        MemberSearchCondition same = condition("member1");
+        same.setTeamName("");  // 빈 문자열은 null과 같은 조건
+        CompletableFuture<List<MemberTeamDto>> second = CompletableFuture.supplyAsync(() -> coalescer.search(same), executor);
+        Thread.sleep(50);
+        release.countDown();
+
+        // then
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(members);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(members);
+        verify(memberRepository, times(1)).search(any());
+        assertThat(meterRegistry.get("member.search.coalesce").tag("query", "search").tag("role", "follower").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void failureIsNotCached() throws Exception {
+        // given
+        when(memberRepository.search(any()))
+                .thenThrow(new IllegalStateException("boom"))
+                .thenReturn(List.of());
+
+        // when, then 실패한 뒤의 같은 검색은 다시 실행한다.
+        assertThatThrownBy(() -> coalescer.search(condition("member1"))).isInstanceOf(IllegalStateException.class);
+        assertThat(coalescer.search(condition("member1"))).isEmpty();
+        verify(memberRepository, times(2)).search(any());
+    }
+
+    @Test
+    void includeArchivedIsPartOfKey() throws Exception {
+        // given
+        MemberSearchCondition active = condition("member1");
+        MemberSearchCondition all = condition("member1");
+        all.setIncludeArchived(true);
+
+        // then
+        assertThat(MemberSearchCoalescer.SearchKey.of(active, null)).isNotEqualTo(MemberSearchCoalescer.SearchKey.of(all, null));
+    }
+
+    private static MemberSearchCondition condition(String username) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        return condition;
+    }
+}
@@ -0,0 +1,80 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberUpsertResult;
+import study.querydsl.dto.MemberUpsertRow;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Transactional
+class MemberUpsertRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberUpsertRepository memberUpsertRepository;
+
+    @Autowired
+    MemberDataVersion memberDataVersion;
+
+    @Test
+    void upsert() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, null));
+        long version = memberDataVersion.current();
+
+        // when
+        MemberUpsertResult result = memberUpsertRepository.upsert(List.of(
+                new MemberUpsertRow("member1", 11, "teamA"),  // 나이 변경
+                new MemberUpsertRow("member2", 20, "teamA"),  // 그대로
+                new MemberUpsertRow("member3", 30, "teamB"),  // 팀 없음 -> 새 팀
+                new MemberUpsertRow("member4", 40, "teamB"),  // 새 회원
+                new MemberUpsertRow("member4", 41, "teamB")));  // 같은 username은 마지막 값
+
+        // then
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getUpdated()).isEqualTo(2);
+        assertThat(result.getUnchanged()).isEqualTo(1);
+        assertThat(memberDataVersion.current()).isGreaterThan(version);
+
+        List<Member> members = em.createQuery(
+                        "select m from Member m join fetch m.team order by m.username", Member.class)
+                .getResultList();
+        assertThat(members).extracting("username").containsExactly("member1", "member2", "member3", "member4");
+        assertThat(members).extracting("age").containsExactly(11, 20, 30, 41);
+        assertThat(members).extracting(m -> m.getTeam().getName()).containsExactly("teamA", "teamA", "teamB", "teamB");
+        assertThat(members.get(3).getLastActiveAt()).isNotNull();  // 새 회원도 보관 대상 판단 기준이 있다.
+
+        Long teamBCount = em.createQuery("select count(t) from Team t where t.name = 'teamB'", Long.class).getSingleResult();
+        assertThat(teamBCount).isEqualTo(1);  // 한 배치 안에서 여러 번 나와도 팀은 하나만 만든다.
+        Long staged = em.createQuery("select count(s) from MemberSyncStage s", Long.class).getSingleResult();
+        assertThat(staged).isZero();
+    }
+
+    @Test
+    void duplicatedUsernameIsRejected() throws Exception {
+        // given username에는 유니크 제약이 없다.
+        em.persist(new Member("dup", 10));
+        em.persist(new Member("dup", 20));
+
+        // when, then DB마다 다르게 동작하지 않도록 적용하기 전에 거절한다.
+        assertThatThrownBy(() -> memberUpsertRepository.upsert(List.of(new MemberUpsertRow("dup", 30, null))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("dup");
+    }
+}
@@ -0,0 +1,118 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// 백그라운드 스레드가 자기 트랜잭션으로 커밋하므로 @Transactional을 붙이지 않고 직접 지운다.
+@SpringBootTest(properties = {
+        "member.write-behind.enabled=true",
+        "member.write-behind.batch-size=50",
+        "member.write-behind.max-delay=50ms"
+})
+class MemberWriteBehindTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    void savesAreCommittedInBatches() throws Exception {
+        // given
+        List<CompletableFuture<Member>> futures = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 120; i++) {
+            futures.add(memberJpaRepository.saveAsync(new Member("member" + i, i)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        // then 완료된 future의 회원은 이미 커밋되어 있다.
+        assertThat(futures).allSatisfy(future -> assertThat(future.join().getId()).isNotNull());
+        Long count = em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+        assertThat(count).isEqualTo(120);
+    }
+
+    @Test
+    void onlyFailedRowCompletesExceptionally() throws Exception {
+        // given 저장되지 않은 팀을 참조하면 flush에서 실패한다.
+        Team transientTeam = new Team("transient");
+
+        // when
+        CompletableFuture<Member> ok1 = memberJpaRepository.saveAsync(new Member("ok1", 10));
+        CompletableFuture<Member> bad = memberJpaRepository.saveAsync(new Member("bad", 20, transientTeam));
+        CompletableFuture<Member> ok2 = memberJpaRepository.saveAsync(new Member("ok2", 30));
+
+        // then 같은 배치의 다른 회원은 한 건씩 다시 저장된다.
+        assertThat(ok1.get(10, TimeUnit.SECONDS).getId()).isNotNull();
+        assertThat(ok2.get(10, TimeUnit.SECONDS).getId()).isNotNull();
+        assertThatThrownBy(() -> bad.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(RuntimeException.class);
+        List<String> usernames = em.createQuery("select m.username from Member m order by m.username", String.class)
+                .getResultList();
+        assertThat(usernames).containsExactly("ok1", "ok2");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void connectionFailureFailsWholeBatchWithoutRetry() throws Exception {
+        // given 트랜잭션을 시작할 때 커넥션을 얻지 못한다.
+        PlatformTransactionManager failing = mock(PlatformTransactionManager.class);
+        when(failing.getTransaction(any())).thenThrow(new CannotCreateTransactionException("connection refused"));
+        ObjectProvider<ShardedMemberRepository> noShards = mock(ObjectProvider.class);
+        MemberWriteBehind writeBehind = new MemberWriteBehind(em, failing, new SimpleMeterRegistry(), noShards,
+                100, 50, Duration.ofMillis(200), Duration.ofMillis(100), Duration.ofSeconds(5));
+
+        try {
+            // when
+            List<CompletableFuture<Member>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(writeBehind.save(new Member("member" + i, i)));
+            }
+
+            // then 한 건씩 다시 하지 않고 배치 전체가 바로 실패한다.
+            for (CompletableFuture<Member> future : futures) {
+                assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(CannotCreateTransactionException.class);
+            }
+            verify(failing, times(1)).getTransaction(any());
+        } finally {
+            writeBehind.destroy();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package study.querydsl.repository;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+@AutoConfigureObservability  // 테스트에서는 기본적으로 트레이싱이 꺼져 있다.
+class QueryTracingTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    ObservationRegistry observationRegistry;
+
+    @Autowired
+    SdkTracerProvider tracerProvider;
+
+    @Autowired
+    InMemorySpanExporter exporter;
+
+    @Test
+    void searchPageSpans() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, 10 + i, teamA));
+        }
+        exporter.reset();
+
+        // when
+        Observation.createNotStarted("test.request", observationRegistry)  // 컨트롤러 요청 span 대신
+                .observe(() -> memberRepository.searchPage(new MemberSearchCondition(), PageRequest.of(0, 3)));
+        tracerProvider.forceFlush().join(5, TimeUnit.SECONDS);
+
+        // then
+        List<SpanData> spans = exporter.getFinishedSpanItems();
+        SpanData parent = spans.stream().filter(s -> s.getName().equals("test.request")).findFirst().orElseThrow();
+        List<SpanData> querySpans = spans.stream().filter(s -> s.getName().startsWith("querydsl")).toList();
+
+        assertThat(querySpans).extracting(s -> s.getAttributes().get(AttributeKey.stringKey("querydsl.phase")))
+                .containsExactly("content", "count");
+        assertThat(querySpans).allSatisfy(s -> {
+            assertThat(s.getParentSpanId()).isEqualTo(parent.getSpanId());
+            assertThat(s.getAttributes().get(AttributeKey.stringKey("db.jpql"))).contains("from Member member1");
+            assertThat(s.getAttributes().get(AttributeKey.stringKey("db.statement"))).containsIgnoringCase("select");
+        });
+        assertThat(querySpans.get(0).getAttributes().get(AttributeKey.stringKey("db.rows"))).isEqualTo("3");
+    }
+}
@@ -0,0 +1,53 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.TeamWithMembersDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamQueryRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamQueryRepository teamQueryRepository;
+
+    @Test
+    void findTeamsWithMembers() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        Team teamC = new Team("teamC");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamC));
+        em.flush();
+        em.clear();
+
+        // when
+        Page<TeamWithMembersDto> first = teamQueryRepository.findTeamsWithMembers(null, PageRequest.of(0, 2));
+        Page<TeamWithMembersDto> second = teamQueryRepository.findTeamsWithMembers(null, PageRequest.of(1, 2));
+
+        // then
+        assertThat(first.getTotalElements()).isEqualTo(3);
+        assertThat(first.getContent()).extracting("teamName").containsExactly("teamA", "teamB");
+        assertThat(first.getContent().get(0).getMembers()).extracting("username").containsExactly("member1", "member2");
+        assertThat(first.getContent().get(1).getMembers()).isEmpty();  // 회원이 없는 팀도 빠지지 않는다.
+        assertThat(second.getContent()).hasSize(1);
+        assertThat(second.getContent().get(0).getMembers()).extracting("username").containsExactly("member3");
+    }
+}
@@ -0,0 +1,313 @@
+package study.querydsl.repository.shard;
+
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberBatchQuery;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TeamWithMembersDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberArchiver;
+import study.querydsl.repository.MemberDataVersion;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberParallelScanner;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberUpsertRepository;
+import study.querydsl.repository.TeamQueryRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(properties = {
+        "member.sharding.enabled=true",
+        "member.sharding.ddl-auto=create",
+        "member.sharding.shards[0].url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "member.sharding.shards[1].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1"
+})
+@Transactional  // 기본 DB(팀 디렉터리)만 롤백된다. 샤드는 컨텍스트가 살아있는 동안 유지되는 메모리 DB라서 테스트마다 직접 비운다.
+class ShardedMemberRepositoryTest {
+
+    @Autowired
+    ShardedMemberRepository shardedMemberRepository;
+
+    @Autowired
+    MemberShards memberShards;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    ObjectProvider<MemberUpsertRepository> memberUpsertRepository;
+
+    @Autowired
+    ObjectProvider<ShardedMemberRepository> shardedMemberRepositories;
+
+    @Autowired
+    MemberParallelScanner memberParallelScanner;
+
+    @Autowired
+    TeamQueryRepository teamQueryRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberDataVersion memberDataVersion;
+
+    @AfterEach
+    void clearShards() {
+        for (int i = 0; i < memberShards.size(); i++) {  // 샤드 쓰기는 테스트 트랜잭션 밖에서 커밋되므로 롤백되지 않는다.
+            EntityManager em = memberShards.get(i).createEntityManager();
+            try {
+                em.getTransaction().begin();
+                em.createNativeQuery("delete from member").executeUpdate();
+                em.createNativeQuery("delete from team").executeUpdate();
+                em.getTransaction().commit();
+            } finally {
+                em.close();
+            }
+        }
+    }
+
+    @Test
+    void searchAcrossShards() throws Exception {
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        shardedMemberRepository.saveMember("member1", 10, teamA.getId());
+        shardedMemberRepository.saveMember("member2", 20, teamA.getId());
+        shardedMemberRepository.saveMember("member3", 30, teamB.getId());
+        shardedMemberRepository.saveMember("member4", 40, teamB.getId());
+
+        // when
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(15);
+        List<MemberTeamDto> result = memberRepository.search(condition);  // 샤딩이 켜져 있으면 MemberRepository도 샤드를 조회한다.
+
+        // then
+        assertThat(memberShards.shardOf(teamA.getId())).isNotEqualTo(memberShards.shardOf(teamB.getId()));
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member2", "member3", "member4");
+    }
+
+    @Test
+    void searchPageAcrossShards() throws Exception {
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        for (int i = 0; i < 10; i++) {
+            shardedMemberRepository.saveMember("member" + i, i, (i % 2 == 0 ? teamA : teamB).getId());
+        }
+
+        // when
+        Page<MemberTeamDto> first = shardedMemberRepository.searchPage(new MemberSearchCondition(), PageRequest.of(0, 4));
+        Page<MemberTeamDto> last = shardedMemberRepository.searchPage(new MemberSearchCondition(), PageRequest.of(2, 4));
+
+        // then
+        assertThat(first.getTotalElements()).isEqualTo(10);
+        assertThat(first.getContent()).hasSize(4);
+        assertThat(last.getContent()).hasSize(2);
+        assertThat(first.getContent()).extracting("memberId").isSorted();
+    }
+
+    @Test
+    void parallelScanReadsAllShards() throws Exception {
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        for (int i = 0; i < 10; i++) {
+            shardedMemberRepository.saveMember("member" + i, i, (i % 2 == 0 ? teamA : teamB).getId());
+        }
+
+        // when
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(2);
+        List<MemberTeamDto> scanned = new ArrayList<>();
+        memberParallelScanner.forEach(condition, scanned::add);
+
+        // then 기본 DB가 아니라 두 샤드를 모두 읽는다.
+        assertThat(scanned).extracting("username")
+                .containsExactlyInAnyOrder("member2", "member3", "member4", "member5", "member6", "member7", "member8", "member9");
+        assertThat(scanned).extracting("teamName").containsOnly("teamA", "teamB");
+    }
+
+    @Test
+    void teamsWithMembersReadMembersFromShards() throws Exception {
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        shardedMemberRepository.saveTeam("teamC");  // 회원 없는 팀
+        shardedMemberRepository.saveMember("member1", 10, teamA.getId());
+        shardedMemberRepository.saveMember("member2", 20, teamB.getId());
+        shardedMemberRepository.saveMember("member3", 30, teamB.getId());
+
+        // when
+        Page<TeamWithMembersDto> page = teamQueryRepository.findTeamsWithMembers(null, PageRequest.of(0, 10));
+
+        // then 팀은 기본 DB에서, 회원은 팀이 속한 샤드에서 읽는다.
+        assertThat(page.getContent()).extracting("teamName").containsExactly("teamA", "teamB", "teamC");
+        assertThat(page.getContent()).extracting(team -> team.getMembers().size()).containsExactly(1, 2, 0);
+        assertThat(page.getContent().get(1).getMembers()).extracting("username").containsExactly("member2", "member3");
+    }
+
+    @Test
+    void searchPrunesShardsByTeamName() throws Exception {
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        shardedMemberRepository.saveMember("member1", 10, teamA.getId());
+        shardedMemberRepository.saveMember("member2", 20, teamB.getId());
+
+        // when
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        List<MemberTeamDto> result = shardedMemberRepository.search(condition);
+
+        // then
+        assertThat(result).extracting("username").containsExactly("member2");
+        assertThat(result).extracting("teamId").containsExactly(teamB.getId());
+    }
+
+    @Test
+    void memberIdsAreUniqueAcrossShards() throws Exception {
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+
+        // when
+        Member member1 = shardedMemberRepository.saveMember("member1", 10, teamA.getId());
+        Member member2 = shardedMemberRepository.saveMember("member2", 20, teamB.getId());
+        Member member3 = shardedMemberRepository.saveMember("member3", 30, null);
+
+        // then
+        assertThat(List.of(member1.getId(), member2.getId(), member3.getId())).doesNotHaveDuplicates();
+        assertThat(shardedMemberRepository.search(new MemberSearchCondition()))
+                .extracting("memberId")
+                .containsExactly(member1.getId(), member2.getId(), member3.getId());  // 발급 순서 = 저장 순서
+    }
+
+    @Test
+    void entityApiUsesShards() throws Exception {
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+
+        // when 샤딩이 켜져 있으면 JpaRepository에서 물려받은 저장/조회도 샤드로 간다.
+        Member member1 = memberRepository.save(new Member("member1", 10, teamA));
+        memberJpaRepository.save(new Member("member2", 20, teamB));
+
+        // then
+        assertThat(member1.getId()).isNotNull();
+        assertThat(memberRepository.findById(member1.getId())).get()
+                .extracting(m -> m.getTeam().getName()).isEqualTo("teamA");  // 샤드에서 팀까지 읽어둔다.
+        assertThat(memberRepository.findAll()).extracting("username").containsExactly("member1", "member2");
+        assertThat(memberRepository.findByUsername("member2")).hasSize(1);
+        assertThat(memberJpaRepository.findByUsername("member1")).extracting("id").containsExactly(member1.getId());
+        assertThat(memberRepository.findAllByIds(List.of(member1.getId()))).hasSize(1);
+        assertThat(memberRepository.count()).isEqualTo(2);
+        assertThat(memberRepository.search(new MemberSearchCondition())).extracting("username")
+                .containsExactly("member1", "member2");
+    }
+
+    @Test
+    void saveExistingMemberUpdatesItsShard() throws Exception {
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        Member member1 = memberRepository.save(new Member("member1", 10, teamA));
+
+        // when 샤드의 회원은 dirty checking이 없으므로 바꾼 뒤 다시 save 한다. 팀이 바뀌면 샤드도 바뀐다.
+        member1.setAge(11);
+        member1.changeTeam(teamB);
+        memberRepository.save(member1);
+
+        // then
+        assertThat(memberRepository.count()).isEqualTo(1);  // 이전 샤드의 행은 지워진다.
+        assertThat(memberRepository.search(new MemberSearchCondition()))
+                .extracting("age", "teamName")
+                .containsExactly(tuple(11, "teamB"));
+
+        memberRepository.deleteById(member1.getId());
+        assertThat(memberRepository.findById(member1.getId())).isEmpty();
+    }
+
+    @Test
+    void moveMembersWithinAndAcrossShards() throws Exception {
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        Team teamC = shardedMemberRepository.saveTeam("teamC");  // 샤드 두 개라서 teamA와 같은 샤드
+        Member member1 = shardedMemberRepository.saveMember("member1", 10, teamA.getId());
+        Member member2 = shardedMemberRepository.saveMember("member2", 20, teamA.getId());
+        Member member3 = shardedMemberRepository.saveMember("member3", 30, teamA.getId());
+
+        // when
+        long crossShard = memberRepository.moveMembers(teamA.getId(), teamB.getId(), QMember.member.age.goe(20));
+        long sameShard = memberRepository.moveMembers(teamA.getId(), teamC.getId(), QMember.member.age.lt(20));
+
+        // then
+        assertThat(memberShards.shardOf(teamA.getId())).isNotEqualTo(memberShards.shardOf(teamB.getId()));
+        assertThat(memberShards.shardOf(teamA.getId())).isEqualTo(memberShards.shardOf(teamC.getId()));
+        assertThat(crossShard).isEqualTo(2);
+        assertThat(sameShard).isEqualTo(1);
+        assertThat(shardedMemberRepository.search(new MemberSearchCondition()))
+                .extracting("memberId", "teamName")
+                .containsExactly(
+                        tuple(member1.getId(), "teamC"),
+                        tuple(member2.getId(), "teamB"),  // id를 그대로 유지한다.
+                        tuple(member3.getId(), "teamB"));
+    }
+
+    @Test
+    void upsertIsNotAvailable() throws Exception {
+        assertThat(memberUpsertRepository.getIfAvailable()).isNull();  // 기본 DB에만 쓰는 upsert는 빈이 없다.
+    }
+
+    @Test
+    void archiverRejectsSharding() throws Exception {
+        // member.archive.enabled=true 이면 스프링이 이 생성자로 빈을 만들다가 시작에 실패한다.
+        assertThatThrownBy(() -> new MemberArchiver(em, ObservationRegistry.NOOP, transactionManager, memberDataVersion,
+                shardedMemberRepositories, Duration.ofDays(365), 10_000))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("member.archive.enabled");
+    }
+
+    @Test
+    void searchBatchLimitsEachShard() throws Exception {
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        for (int i = 0; i < 6; i++) {
+            shardedMemberRepository.saveMember("member" + i, i, (i % 2 == 0 ? teamA : teamB).getId());
+        }
+        MemberBatchQuery all = new MemberBatchQuery();
+        all.setLimit(3);
+
+        // when
+        List<List<MemberTeamDto>> result = memberRepository.searchBatch(List.of(all));
+
+        // then 샤드 두 곳의 앞쪽 3건씩을 합쳐서 id 순 앞쪽 3건
+        assertThat(result.get(0)).extracting("username").containsExactly("member0", "member1", "member2");
+    }
+}
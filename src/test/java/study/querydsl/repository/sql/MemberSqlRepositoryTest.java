@@ -0,0 +1,76 @@
+package study.querydsl.repository.sql;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+@SpringBootTest(properties = "member.search.engine=sql")
+@Transactional
+class MemberSqlRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;  // search, searchPage가 MemberSqlRepository로 넘어간다.
+
+    @Test
+    void search() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40));
+        em.flush();  // SQL 경로는 영속성 컨텍스트를 보지 않으므로 DB에 반영해둔다. (같은 트랜잭션 커넥션이라 커밋 전이어도 보인다)
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        // when
+        List<MemberTeamDto> result = memberRepository.search(condition);
+
+        // then
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member2", "member3", "member4");
+        assertThat(result).filteredOn(dto -> dto.getUsername().equals("member4"))
+                .extracting("teamId", "teamName")
+                .containsExactly(tuple(null, null));  // 팀이 없는 회원도 left join으로 나온다.
+    }
+
+    @Test
+    void searchPage() throws Exception {
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+        em.flush();
+
+        // when
+        Page<MemberTeamDto> result = memberRepository.searchPage(new MemberSearchCondition(),
+                PageRequest.of(1, 3, Sort.by(Sort.Order.desc("age"))));
+
+        // then
+        assertThat(result.getTotalElements()).isEqualTo(10);
+        assertThat(result.getContent()).extracting("username").containsExactly("member6", "member5", "member4");
+    }
+}
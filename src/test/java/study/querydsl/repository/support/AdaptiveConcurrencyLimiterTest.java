@@ -0,0 +1,91 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.sql.SQLTransientConnectionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void growsWhileLatencyIsStable() throws Exception {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 10);
+
+        // when
+        for (int i = 0; i < 30; i++) {
+            limiter.execute(() -> sleep(2));  // 한도가 작을 때는 호출 하나로도 한도의 절반 이상을 쓰고 있다.
+        }
+
+        // then
+        assertThat(limiter.getLimit()).isGreaterThan(1);
+    }
+
+    @Test
+    void shrinksOnSlowSample() throws Exception {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 1, 10);
+        for (int i = 0; i < 5; i++) {
+            limiter.execute(() -> sleep(5));  // 평소 지연 시간
+        }
+        int before = limiter.getLimit();
+
+        // when
+        limiter.execute(() -> sleep(100));  // 한도를 다 쓰지 않고 있어도 느려지면 줄인다.
+
+        // then
+        assertThat(limiter.getLimit()).isLessThan(before);
+    }
+
+    @Test
+    void shrinksOnOverloadFailure() throws Exception {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 1, 10);
+
+        // when
+        assertThatThrownBy(() -> limiter.execute(() -> {
+            throw new QueryTimeoutException("timeout");
+        })).isInstanceOf(QueryTimeoutException.class);
+        int afterTimeout = limiter.getLimit();
+        assertThatThrownBy(() -> limiter.execute(() -> {
+            throw new IllegalStateException("pool", new SQLTransientConnectionException("Connection is not available"));
+        })).isInstanceOf(IllegalStateException.class);
+        int afterPoolExhausted = limiter.getLimit();
+        assertThatThrownBy(() -> limiter.execute(() -> {
+            throw new IllegalArgumentException("bad request");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        // then
+        assertThat(afterTimeout).isEqualTo(9);
+        assertThat(afterPoolExhausted).isEqualTo(8);  // cause로 감싸진 풀 고갈도 과부하로 본다.
+        assertThat(limiter.getLimit()).isEqualTo(afterPoolExhausted);  // 과부하와 관계없는 실패는 반영하지 않는다.
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void rejectsAboveLimit() throws Exception {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 1);
+
+        // when, then
+        limiter.execute(() -> {
+            assertThatThrownBy(() -> limiter.execute(() -> "nested"))  // 한도 1을 이미 쓰고 있다.
+                    .isInstanceOf(ConcurrencyLimitExceededException.class);
+            return null;
+        });
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.execute(() -> "ok")).isEqualTo("ok");
+    }
+
+    private static Object sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,90 @@
+package study.querydsl.repository.support;
+
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class QueryDeadlineTest {
+
+    @AfterEach
+    void after() {
+        QueryDeadline.clear();
+    }
+
+    @Test
+    void noDeadlineNoHint() throws Exception {
+        // given 마감 시각이 없는 스레드(배치, 테스트 등)
+        Query query = mock(Query.class);
+
+        // when
+        QueryDeadline.apply(query);
+
+        // then
+        verify(query, never()).setHint(anyString(), any());
+        assertThat(QueryDeadline.remaining()).isEmpty();
+    }
+
+    @Test
+    void remainingTimeIsRoundedDownToSeconds() throws Exception {
+        // given
+        QueryDeadline.start(Duration.ofMillis(1500));
+        Query query = mock(Query.class);
+
+        // when
+        QueryDeadline.apply(query);
+
+        // then JDBC 타임아웃은 초 단위라서 남은 1.5초를 1초로 내려서 넘긴다. (마감 시각을 넘기지 않도록)
+        verify(query).setHint(eq(QueryDeadline.TIMEOUT_HINT), eq(1000));
+        assertThat(QueryDeadline.remaining()).hasValueSatisfying(remaining ->
+                assertThat(remaining).isPositive().isLessThanOrEqualTo(Duration.ofMillis(1500)));
+    }
+
+    @Test
+    void shareBelowOneSecondGetsOneSecond() throws Exception {
+        // given 기본 예산 2초의 절반은 시작하자마자 재도 1초보다 조금 작다.
+        QueryDeadline.start(Duration.ofSeconds(2));
+        Query query = mock(Query.class);
+
+        // when
+        QueryDeadline.apply(query, QueryDeadline.CONTENT_SHARE);
+
+        // then 전체 남은 시간이 1초 이상이면 0(타임아웃 없음) 대신 1초를 준다.
+        verify(query).setHint(eq(QueryDeadline.TIMEOUT_HINT), eq(1000));
+    }
+
+    @Test
+    void lessThanOneSecondFailsBeforeQuery() throws Exception {
+        // given
+        QueryDeadline.start(Duration.ofMillis(800));
+        Query query = mock(Query.class);
+
+        // when, then 1초 타임아웃도 마감 시각을 넘기므로 DB에 보내지 않는다.
+        assertThatThrownBy(() -> QueryDeadline.apply(query)).isInstanceOf(QueryTimeoutException.class);
+        verify(query, never()).setHint(anyString(), any());
+    }
+
+    @Test
+    void expiredDeadlineFailsBeforeQuery() throws Exception {
+        // given
+        QueryDeadline.start(Duration.ofMillis(1));
+        Thread.sleep(10);
+        Query query = mock(Query.class);
+
+        // when, then 이미 늦었으면 DB에 보내지 않는다.
+        assertThatThrownBy(() -> QueryDeadline.apply(query)).isInstanceOf(QueryTimeoutException.class);
+        verify(query, never()).setHint(anyString(), any());
+        assertThat(QueryDeadline.remaining()).hasValueSatisfying(remaining -> assertThat(remaining).isNegative());
+    }
+}
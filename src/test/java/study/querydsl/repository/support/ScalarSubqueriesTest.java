@@ -0,0 +1,121 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+
+import static com.querydsl.jpa.JPAExpressions.select;
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class ScalarSubqueriesTest {
+
+    @Autowired
+    EntityManager em;
+
+    InstrumentedJPAQueryFactory queryFactory;
+
+    QMember memberSub = new QMember("memberSub");
+
+    @BeforeEach
+    void before() {
+        queryFactory = new InstrumentedJPAQueryFactory(em, ObservationRegistry.NOOP);
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void maxAgeIsBoundAsValue() throws Exception {
+        // given
+        JPAQuery<Member> query = queryFactory
+                .selectFrom(member)
+                .where(member.age.eq(select(memberSub.age.max()).from(memberSub)));
+
+        // when
+        JPAQuery<Member> rewritten = ScalarSubqueries.NO_CACHE.rewrite(query, em, JPQLTemplates.DEFAULT);
+        List<Member> result = query.fetch();
+
+        // then
+        assertThat(rewritten.toString()).doesNotContain("max(").contains("member1.age = 40");
+        assertThat(result).extracting("age").containsExactly(40);
+    }
+
+    @Test
+    void averageComparedWithIntegerColumn() throws Exception {
+        // when
+        List<Member> result = queryFactory
+                .selectFrom(member)
+                .where(member.age.goe(select(memberSub.age.avg()).from(memberSub)))  // 25.0(Double)과 Integer 컬럼 비교
+                .orderBy(member.age.asc())
+                .fetch();
+
+        // then
+        assertThat(result).extracting("age").containsExactly(30, 40);
+    }
+
+    @Test
+    void projectionSubQueryIsInjected() throws Exception {
+        // when
+        List<Tuple> tuples = queryFactory
+                .select(member.username, select(memberSub.age.avg()).from(memberSub))
+                .from(member)
+                .orderBy(member.username.asc())
+                .fetch();
+        List<UserDto> users = queryFactory
+                .select(Projections.fields(UserDto.class,
+                        member.username.as("name"),
+                        ExpressionUtils.as(JPAExpressions.select(memberSub.age.max()).from(memberSub), "age")))
+                .from(member)
+                .fetch();
+
+        // then
+        assertThat(tuples).hasSize(4);
+        assertThat(tuples.get(0).get(member.username)).isEqualTo("member1");
+        assertThat(tuples).allSatisfy(tuple -> assertThat(tuple.get(1, Double.class)).isEqualTo(25.0));
+        assertThat(users).extracting("age").containsOnly(40);
+    }
+
+    @Test
+    void correlatedSubQueryIsLeftAlone() throws Exception {
+        // given 팀별 최고령 회원: 서브쿼리가 바깥의 member를 참조한다.
+        JPAQuery<Member> query = queryFactory
+                .selectFrom(member)
+                .where(member.age.eq(select(memberSub.age.max())
+                        .from(memberSub)
+                        .where(memberSub.team.eq(member.team))));
+
+        // when
+        JPAQuery<Member> rewritten = ScalarSubqueries.NO_CACHE.rewrite(query, em, JPQLTemplates.DEFAULT);
+        List<Member> result = query.orderBy(member.age.asc()).fetch();
+
+        // then
+        assertThat(rewritten).isNull();
+        assertThat(result).extracting("age").containsExactly(20, 40);
+    }
+}
@@ -0,0 +1,87 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.querydsl.jpa.JPAExpressions.select;
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+// 서브쿼리 캐시는 트랜잭션 밖이나 읽기 전용 트랜잭션에서만 쓰므로 @Transactional을 붙이지 않고 직접 지운다.
+@SpringBootTest
+class ScalarSubqueryCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ScalarSubqueries scalarSubqueries;
+
+    QMember memberSub = new QMember("memberSub");
+
+    @BeforeEach
+    void before() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("member1", 10));
+            em.persist(new Member("member2", 40));
+        });
+    }
+
+    @AfterEach
+    void after() {
+        transactionTemplate.executeWithoutResult(status -> em.createQuery("delete from Member").executeUpdate());
+    }
+
+    @Test
+    void cachedUntilDataVersionChanges() throws Exception {
+        // given 캐시는 인스턴스마다 따로 가진다.
+        AtomicLong version = new AtomicLong();
+        InstrumentedJPAQueryFactory queryFactory = new InstrumentedJPAQueryFactory(em, ObservationRegistry.NOOP,
+                new ScalarSubqueries(Duration.ofMinutes(1), version::get));
+
+        // when
+        List<Member> first = oldest(queryFactory);
+        transactionTemplate.executeWithoutResult(status -> em.createQuery("update Member m set m.age = 50 where m.username = 'member1'")
+                .executeUpdate());  // 벌크 update는 데이터 버전을 올리지 않는다.
+        List<Member> cached = oldest(queryFactory);
+        version.incrementAndGet();
+        List<Member> refreshed = oldest(queryFactory);
+
+        // then
+        assertThat(first).extracting("username").containsExactly("member2");
+        assertThat(cached).isEmpty();  // 이전에 계산한 최대 나이(40)를 그대로 쓴다.
+        assertThat(refreshed).extracting("username").containsExactly("member1");
+    }
+
+    @Test
+    void applicationCacheIsBean() throws Exception {
+        // when 리포지토리가 쓰는 캐시는 스프링 빈이라 컨텍스트마다 따로 생긴다.
+        InstrumentedJPAQueryFactory queryFactory = new InstrumentedJPAQueryFactory(em, ObservationRegistry.NOOP, scalarSubqueries);
+
+        // then
+        assertThat(scalarSubqueries).isNotSameAs(ScalarSubqueries.NO_CACHE);
+        assertThat(oldest(queryFactory)).extracting("username").containsExactly("member2");
+    }
+
+    private List<Member> oldest(InstrumentedJPAQueryFactory queryFactory) {
+        return queryFactory
+                .selectFrom(member)
+                .where(member.age.eq(select(memberSub.age.max()).from(memberSub)))
+                .fetch();
+    }
+}
@@ -0,0 +1,155 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    SingleFlight<String, String> flight = new SingleFlight<>();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void after() {
+        QueryDeadline.clear();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void followerSharesLeaderResult() throws Exception {
+        // given leader가 실행 중인 동안
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<SingleFlight.Result<String>> leader = CompletableFuture.supplyAsync(() ->
+                flight.execute("key", () -> {
+                    started.countDown();
+                    await(release);
+                    return "value" + loads.incrementAndGet();
+                }), executor);
+        started.await(5, TimeUnit.SECONDS);
+
+        // when 같은 키로 들어온 호출은 실행하지 않고 기다린다.
+        CompletableFuture<SingleFlight.Result<String>> follower = CompletableFuture.supplyAsync(() ->
+                flight.execute("key", () -> "value" + loads.incrementAndGet()), executor);
+        Thread.sleep(50);
+        release.countDown();
+
+        // then
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result<>("value1", true));
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result<>("value1", false));
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void followerReceivesLeaderException() throws Exception {
+        // given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<SingleFlight.Result<String>> leader = CompletableFuture.supplyAsync(() ->
+                flight.execute("key", () -> {
+                    started.countDown();
+                    await(release);
+                    throw new IllegalStateException("boom");
+                }), executor);
+        started.await(5, TimeUnit.SECONDS);
+
+        // when
+        CompletableFuture<SingleFlight.Result<String>> follower = CompletableFuture.supplyAsync(() ->
+                flight.execute("key", () -> "unused"), executor);
+        Thread.sleep(50);
+        release.countDown();
+
+        // then 감싸지 않은 원래 예외를 받는다.
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                .cause().isInstanceOf(IllegalStateException.class).hasMessage("boom");
+    }
+
+    @Test
+    void followerWithTimeLeftRetriesAfterLeaderTimeout() throws Exception {
+        // given leader가 자기 마감 시각 때문에 타임아웃으로 실패한다.
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<SingleFlight.Result<String>> leader = CompletableFuture.supplyAsync(() ->
+                flight.execute("key", () -> {
+                    started.countDown();
+                    await(release);
+                    throw new QueryTimeoutException("Request deadline exceeded before query execution");
+                }), executor);
+        started.await(5, TimeUnit.SECONDS);
+
+        // when 시간이 넉넉한 follower
+        CompletableFuture<SingleFlight.Result<String>> follower = CompletableFuture.supplyAsync(() -> {
+            QueryDeadline.start(Duration.ofSeconds(10));
+            try {
+                return flight.execute("key", () -> "retried");
+            } finally {
+                QueryDeadline.clear();
+            }
+        }, executor);
+        Thread.sleep(50);
+        release.countDown();
+
+        // then leader의 타임아웃을 받지 않고 직접 실행한다.
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(QueryTimeoutException.class);
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result<>("retried", true));
+    }
+
+    @Test
+    void keyIsRemovedAfterCompletion() throws Exception {
+        // when 끝난 뒤에 들어온 호출은 결과를 재사용하지 않고 다시 실행한다.
+        SingleFlight.Result<String> first = flight.execute("key", () -> "first");
+        assertThatThrownBy(() -> flight.execute("key", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+        SingleFlight.Result<String> third = flight.execute("key", () -> "third");
+
+        // then
+        assertThat(first).isEqualTo(new SingleFlight.Result<>("first", true));
+        assertThat(third).isEqualTo(new SingleFlight.Result<>("third", true));  // 실패한 뒤에도 키가 남지 않는다.
+    }
+
+    @Test
+    void followerStopsWaitingAtDeadline() throws Exception {
+        // given leader가 끝나지 않는 동안
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<SingleFlight.Result<String>> leader = CompletableFuture.supplyAsync(() ->
+                flight.execute("key", () -> {
+                    started.countDown();
+                    await(release);
+                    return "late";
+                }), executor);
+        started.await(5, TimeUnit.SECONDS);
+
+        // when follower의 요청 마감 시각이 먼저 지나면
+        QueryDeadline.start(Duration.ofMillis(100));
+        long start = System.nanoTime();
+
+        // then
+        assertThatThrownBy(() -> flight.execute("key", () -> "unused")).isInstanceOf(QueryTimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS).value()).isEqualTo("late");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
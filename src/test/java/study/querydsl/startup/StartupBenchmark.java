@@ -0,0 +1,90 @@
+package study.querydsl.startup;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 애플리케이션 프로세스를 띄우고 첫 요청(/v2/members)이 200으로 응답할 때까지 걸린 시간을 잰다.
+ * ./gradlew startupBenchmark (-Paot) 로 실행한다. 모드별로 여러 번 실행해서 중앙값을 출력한다.
+ *
+ * 시스템 프로퍼티
+ * - benchmark.classpath: 애플리케이션 클래스패스 (jar 목록)
+ * - benchmark.cds-archive: CDS 아카이브 경로. 파일이 있으면 CDS 모드도 측정한다.
+ * - benchmark.aot: true면 AOT 모드도 측정한다.
+ */
+public class StartupBenchmark {
+
+    private static final String MAIN_CLASS = "study.querydsl.QuerydslApplication";
+    private static final int PORT = 18080;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        String classpath = System.getProperty("benchmark.classpath");
+        File archive = new File(System.getProperty("benchmark.cds-archive", "build/cds/app.jsa"));
+        boolean aot = Boolean.getBoolean("benchmark.aot");
+
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        modes.put("baseline", List.of());
+        modes.put("lazy", List.of("--spring.profiles.active=local,startup"));
+        if (aot) {
+            modes.put("aot+lazy", List.of("-Dspring.aot.enabled=true", "--spring.profiles.active=local,startup"));
+        }
+        if (archive.isFile()) {
+            List<String> cds = new ArrayList<>(List.of("-XX:SharedArchiveFile=" + archive.getPath(), "-Xlog:cds=off"));
+            if (aot) {
+                cds.add("-Dspring.aot.enabled=true");
+            }
+            cds.add("--spring.profiles.active=local,startup");
+            modes.put(aot ? "aot+cds+lazy" : "cds+lazy", cds);
+        }
+
+        for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+            List<Long> samples = new ArrayList<>();
+            for (int i = 0; i < RUNS; i++) {
+                samples.add(timeToFirstRequest(classpath, mode.getValue()));
+            }
+            Collections.sort(samples);
+            System.out.printf("%-14s time-to-first-request median=%dms runs=%s%n", mode.getKey(), samples.get(RUNS / 2), samples);
+        }
+    }
+
+    private static long timeToFirstRequest(String classpath, List<String> options) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        options.stream().filter(o -> o.startsWith("-")  && !o.startsWith("--")).forEach(command::add);  // JVM 옵션
+        command.addAll(Arrays.asList("-cp", classpath, MAIN_CLASS, "--server.port=" + PORT));
+        options.stream().filter(o -> o.startsWith("--")).forEach(command::add);  // 애플리케이션 인자
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/v2/members?size=20")).build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            while (process.isAlive()) {
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return (System.nanoTime() - start) / 1_000_000;
+                    }
+                } catch (java.io.IOException notYet) {
+                    // 아직 포트가 열리지 않았다.
+                }
+                Thread.sleep(20);
+            }
+            throw new IllegalStateException("Application exited with code " + process.exitValue());
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+}